@@ -0,0 +1,92 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * Copy of the original limited infection, which searches the total infection
+ * of every user separately over the User objects, kept as the baseline the
+ * benchmarks compare against now that {@link InfectionController} indexes
+ * the users into a graph even when it has none.
+ *
+ * @author Christopher Chen
+ */
+public final class BaselineInfection {
+
+	private BaselineInfection() {
+	}
+
+	/**
+	 * @param users
+	 *            users to check for possible total infections from
+	 * @param limit
+	 *            cap to number of users to infect
+	 * @param feature
+	 *            the feature to deploy
+	 * @return the users infected
+	 * @throws IllegalArgumentException
+	 *             if every total infection is over the limit
+	 */
+	public static List<User> limitedInfection(List<User> users, int limit, KhanSiteFeature feature) {
+		List<User> toInfect = limitedInfectionRoute(users, limit);
+		if (toInfect.isEmpty()) {
+			throw new IllegalArgumentException(
+					"There are no infections that maintain consistency and are under/equal to the limit");
+		}
+		for (User u : toInfect) {
+			u.setCurrentFeature(feature);
+		}
+		return toInfect;
+	}
+
+	private static List<User> limitedInfectionRoute(List<User> users, int limit) {
+		Map<User, List<User>> possibleInfections = new HashMap<User, List<User>>();
+		for (User u : users) {
+			possibleInfections.put(u, getConnectedUsers(u));
+		}
+		List<User> closestPath = new ArrayList<User>();
+		for (User u : possibleInfections.keySet()) {
+			List<User> infectionPath = possibleInfections.get(u);
+			int infectionSize = infectionPath.size();
+			if (infectionSize <= limit && infectionSize > closestPath.size())
+				closestPath = infectionPath;
+		}
+		return closestPath;
+	}
+
+	private static List<User> getConnectedUsers(User user) {
+		List<User> connectedUsers = new LinkedList<User>();
+		Set<User> visited = new HashSet<User>();
+		Queue<User> toVisit = new LinkedList<User>();
+		toVisit.add(user);
+		connectedUsers.add(user);
+		while (!toVisit.isEmpty()) {
+			User currentNode = toVisit.remove();
+			visited.add(currentNode);
+			for (User u : getUnvisitedAdjacent(visited, currentNode)) {
+				visited.add(u);
+				connectedUsers.add(u);
+				toVisit.add(u);
+			}
+		}
+		return connectedUsers;
+	}
+
+	private static List<User> getUnvisitedAdjacent(Set<User> visited, User user) {
+		List<User> unvisitedAdjacentUsers = new LinkedList<User>();
+		for (User u : user.getRelatedUsers()) {
+			if (!visited.contains(u))
+				unvisitedAdjacentUsers.add(u);
+		}
+		return unvisitedAdjacentUsers;
+	}
+}
@@ -0,0 +1,134 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.khan.interview.chris.limitedInfection.model.RelationLoader;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * Synthetic user graphs for the benchmarks. Random graphs come from
+ * {@link UserGraphGenerator}; for the other shapes relations are collected
+ * and added in bulk with {@link RelationLoader} rather than through
+ * {@link User#addRelatedUser(User)}, so setting up a multi-million user graph
+ * doesn't dominate the run.
+ *
+ * @author Christopher Chen
+ */
+public final class BenchmarkGraphs {
+
+	/**
+	 * Shapes of graph to benchmark against.
+	 */
+	public enum Distribution {
+		/**
+		 * Uniformly random relations, average of 8 per user.
+		 */
+		RANDOM,
+		/**
+		 * Preferential attachment, 4 relations per new user, giving a few very
+		 * high degree hubs.
+		 */
+		POWER_LAW,
+		/**
+		 * Half of the users in one giant cluster of linked classrooms, the
+		 * other half in many small, separate classrooms.
+		 */
+		CLASSROOMS
+	}
+
+	private BenchmarkGraphs() {
+		// static helpers only
+	}
+
+	/**
+	 * @param distribution
+	 *            shape of the graph
+	 * @param count
+	 *            number of users
+	 * @param seed
+	 *            random seed, the same seed gives the same graph
+	 */
+	public static List<User> generate(Distribution distribution, int count, long seed) {
+		if (distribution == Distribution.RANDOM) {
+			return UserGraphGenerator.generateRandomUsers(count, 8, seed);
+		}
+		List<User> users = new ArrayList<User>(count);
+		for (int i = 0; i < count; i++) {
+			users.add(new User("id-" + i, "username-" + i, new ArrayList<User>(), null));
+		}
+		Random random = new Random(seed);
+		Relations relations = new Relations();
+		if (distribution == Distribution.POWER_LAW) {
+			powerLaw(relations, count, random);
+		} else {
+			classrooms(relations, count, random);
+		}
+		RelationLoader.load(users, relations.from, relations.to, relations.size);
+		return users;
+	}
+
+	private static void powerLaw(Relations relations, int count, Random random) {
+		int perUser = 4;
+		// every relation adds both of its users, so picking uniformly from
+		// here picks users proportionally to their degree
+		int[] endpoints = new int[(int) Math.min(Integer.MAX_VALUE - 8, 2L * perUser * count)];
+		int size = 0;
+		for (int v = 1; v < count; v++) {
+			for (int k = 0; k < perUser; k++) {
+				int target = size == 0 ? 0 : endpoints[random.nextInt(size)];
+				relations.add(v, target);
+				if (size + 2 <= endpoints.length) {
+					endpoints[size++] = v;
+					endpoints[size++] = target;
+				}
+			}
+		}
+	}
+
+	private static void classrooms(Relations relations, int count, Random random) {
+		int giant = count / 2;
+		// giant cluster: coaches of 20 students each, coaches chained together
+		// with a few extra random links between classrooms
+		int previousCoach = -1;
+		for (int coach = 0; coach < giant; coach += 21) {
+			for (int s = coach + 1; s < Math.min(coach + 21, giant); s++) {
+				relations.add(coach, s);
+			}
+			if (previousCoach >= 0) {
+				relations.add(previousCoach, coach);
+				relations.add(coach, random.nextInt(coach));
+			}
+			previousCoach = coach;
+		}
+		// small separate classrooms of 1 coach and 1 to 30 students
+		int coach = giant;
+		while (coach < count) {
+			int end = Math.min(count, coach + 2 + random.nextInt(30));
+			for (int s = coach + 1; s < end; s++) {
+				relations.add(coach, s);
+			}
+			coach = end;
+		}
+	}
+
+	/**
+	 * Relations as pairs of positions in the user list, grown as needed.
+	 */
+	private static final class Relations {
+		int[] from = new int[1024];
+		int[] to = new int[1024];
+		int size;
+
+		void add(int a, int b) {
+			if (size == from.length) {
+				from = Arrays.copyOf(from, size * 2);
+				to = Arrays.copyOf(to, size * 2);
+			}
+			from[size] = a;
+			to[size++] = b;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.khan.interview.chris.limitedInfection.BenchmarkGraphs.Distribution;
+import com.khan.interview.chris.limitedInfection.graph.UserGraph;
+import com.khan.interview.chris.limitedInfection.model.RelationLoader;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * Benchmarks building user graphs: relation by relation through
+ * {@link User#addRelatedUser(User)}, in bulk through {@link RelationLoader},
+ * and snapshotting into a {@link UserGraph}.
+ *
+ * @author Christopher Chen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphBuildBenchmark {
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "RANDOM", "POWER_LAW", "CLASSROOMS" })
+	public Distribution distribution;
+
+	private List<User> users;
+	// relation i is between users relationFrom[i] and relationTo[i]
+	private int[] relationFrom;
+	private int[] relationTo;
+
+	@Setup
+	public void setUp() {
+		users = BenchmarkGraphs.generate(distribution, size, 42);
+		Map<User, Integer> index = new IdentityHashMap<User, Integer>();
+		for (int i = 0; i < users.size(); i++) {
+			index.put(users.get(i), i);
+		}
+		List<int[]> relations = new ArrayList<int[]>();
+		for (int i = 0; i < users.size(); i++) {
+			for (User r : users.get(i).getRelatedUsers()) {
+				int j = index.get(r);
+				if (i < j)
+					relations.add(new int[] { i, j });
+			}
+		}
+		relationFrom = new int[relations.size()];
+		relationTo = new int[relations.size()];
+		for (int i = 0; i < relations.size(); i++) {
+			relationFrom[i] = relations.get(i)[0];
+			relationTo[i] = relations.get(i)[1];
+		}
+	}
+
+	@Benchmark
+	public List<User> addRelatedUser() {
+		List<User> fresh = new ArrayList<User>(size);
+		for (int i = 0; i < size; i++) {
+			fresh.add(new User("id-" + i, "username-" + i, new ArrayList<User>(), null));
+		}
+		for (int i = 0; i < relationFrom.length; i++) {
+			fresh.get(relationFrom[i]).addRelatedUser(fresh.get(relationTo[i]));
+		}
+		return fresh;
+	}
+
+	@Benchmark
+	public List<User> relationLoader() {
+		List<User> fresh = new ArrayList<User>(size);
+		for (int i = 0; i < size; i++) {
+			fresh.add(new User("id-" + i, "username-" + i, new ArrayList<User>(), null));
+		}
+		RelationLoader.load(fresh, relationFrom, relationTo);
+		return fresh;
+	}
+
+	@Benchmark
+	public UserGraph userGraphSnapshot() {
+		return UserGraph.of(users);
+	}
+}
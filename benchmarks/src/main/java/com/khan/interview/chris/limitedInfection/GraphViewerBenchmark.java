@@ -0,0 +1,40 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * Benchmarks {@link GraphViewer#generateRandomUserGraph(int)}, the
+ * GraphStream backed generator used by the visualization.
+ *
+ * @author Christopher Chen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphViewerBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+
+	@Benchmark
+	public List<User> generateRandomUserGraph() {
+		return GraphViewer.generateRandomUserGraph(size);
+	}
+}
@@ -0,0 +1,123 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.khan.interview.chris.limitedInfection.BenchmarkGraphs.Distribution;
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * Benchmarks total and limited infection, comparing the controller walking
+ * User objects directly against the controller built on a graph snapshot.
+ * The graph-backed controller is built (and its components labelled) once
+ * per trial, as it would be in a long running planner. Without a graph, the
+ * controller indexes the users for every limited infection, so the original
+ * per-user search is measured from {@link BaselineInfection} instead.
+ *
+ * @author Christopher Chen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InfectionBenchmark {
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "RANDOM", "POWER_LAW", "CLASSROOMS" })
+	public Distribution distribution;
+
+	@Param({ "1", "1000", "50000" })
+	public int seeds;
+
+	private List<User> users;
+	private List<User> seedUsers;
+	private int limit;
+	private KhanSiteFeature feature;
+	private InfectionController objectController;
+	private InfectionController graphController;
+
+	@Setup
+	public void setUp() {
+		users = BenchmarkGraphs.generate(distribution, size, 42);
+		Random random = new Random(7);
+		seedUsers = new ArrayList<User>();
+		for (int i = 0; i < Math.min(seeds, size); i++) {
+			seedUsers.add(users.get(random.nextInt(size)));
+		}
+		// a 5% rollout
+		limit = Math.max(1, size / 20);
+		feature = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		objectController = new InfectionController();
+		graphController = new InfectionController(users);
+		// label the components outside of the measurement
+		graphController.limited_infection(users, size, feature);
+	}
+
+	@Benchmark
+	public List<User> totalInfectionObjectGraph() {
+		return objectController.total_infection(seedUsers, feature);
+	}
+
+	@Benchmark
+	public List<User> totalInfectionGraph() {
+		return graphController.total_infection(seedUsers, feature);
+	}
+
+	@Benchmark
+	public List<User> limitedInfectionBaseline() {
+		try {
+			return BaselineInfection.limitedInfection(users, limit, feature);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	@Benchmark
+	public List<User> limitedInfectionObjectGraph() {
+		// labels a snapshot of the users on every call
+		return limitedOrEmpty(objectController, LimitedInfectionStrategy.SINGLE_COMPONENT);
+	}
+
+	@Benchmark
+	public List<User> limitedInfectionGraph() {
+		return limitedOrEmpty(graphController, LimitedInfectionStrategy.SINGLE_COMPONENT);
+	}
+
+	@Benchmark
+	public List<User> limitedInfectionSubsetSum() {
+		return limitedOrEmpty(graphController, LimitedInfectionStrategy.SUBSET_SUM);
+	}
+
+	@Benchmark
+	public List<User> getConnectedUsers() {
+		return objectController.getConnectedUsers(seedUsers.get(0));
+	}
+
+	private List<User> limitedOrEmpty(InfectionController controller, LimitedInfectionStrategy strategy) {
+		try {
+			return controller.limited_infection(users, limit, feature, strategy);
+		} catch (IllegalArgumentException e) {
+			// every component is over the limit, still a complete search
+			return null;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.khan.interview.chris.limitedInfection.BenchmarkGraphs.Distribution;
+import com.khan.interview.chris.limitedInfection.graph.DirectionOptimizingBfs;
+import com.khan.interview.chris.limitedInfection.graph.ParallelBfs;
+import com.khan.interview.chris.limitedInfection.graph.Traversal;
+import com.khan.interview.chris.limitedInfection.graph.UserGraph;
+
+/**
+ * Compares the breadth first searches available on a {@link UserGraph},
+ * starting from a single user of the largest cluster.
+ *
+ * @author Christopher Chen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TraversalBenchmark {
+
+	/**
+	 * The traversals to compare.
+	 */
+	public enum Kind {
+		SERIAL, PARALLEL, DIRECTION_OPTIMIZING
+	}
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "RANDOM", "POWER_LAW", "CLASSROOMS" })
+	public Distribution distribution;
+
+	@Param({ "SERIAL", "PARALLEL", "DIRECTION_OPTIMIZING" })
+	public Kind kind;
+
+	private UserGraph graph;
+	private Traversal traversal;
+
+	@Setup
+	public void setUp() {
+		graph = UserGraph.of(BenchmarkGraphs.generate(distribution, size, 42));
+		switch (kind) {
+		case PARALLEL:
+			traversal = new ParallelBfs();
+			break;
+		case DIRECTION_OPTIMIZING:
+			traversal = new DirectionOptimizingBfs();
+			break;
+		default:
+			traversal = Traversal.SERIAL;
+			break;
+		}
+	}
+
+	@Benchmark
+	public int[] reachableFrom() {
+		return traversal.reachableFrom(graph, 0);
+	}
+}
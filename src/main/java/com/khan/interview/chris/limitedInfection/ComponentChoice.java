@@ -0,0 +1,63 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.BitSet;
+
+import com.khan.interview.chris.limitedInfection.graph.ComponentIndex;
+import com.khan.interview.chris.limitedInfection.planner.SubsetSumSelector;
+
+/**
+ * ComponentChoice picks the total infections (components) a limited infection
+ * deploys to, shared by {@link InfectionController} and
+ * {@link InfectionService}. It only reads the component index.
+ *
+ * @author Christopher Chen
+ */
+final class ComponentChoice {
+
+	private ComponentChoice() {
+		// static helpers only
+	}
+
+	/**
+	 * @param index
+	 *            the component index to choose from
+	 * @param candidates
+	 *            ids of the components that may be chosen
+	 * @param limit
+	 *            cap on the combined size of the chosen components
+	 * @param strategy
+	 *            how to choose
+	 * @return ids of the chosen components, empty if no component fits under
+	 *         the limit
+	 * @throws IllegalArgumentException
+	 *             for {@link LimitedInfectionStrategy#PARTIAL} and
+	 *             {@link LimitedInfectionStrategy#COHORTS}, which don't choose
+	 *             whole components
+	 */
+	static BitSet choose(ComponentIndex index, BitSet candidates, int limit, LimitedInfectionStrategy strategy) {
+		BitSet chosen = new BitSet();
+		switch (strategy) {
+		case PARTIAL:
+		case COHORTS:
+			throw new IllegalArgumentException(strategy + " doesn't choose whole components");
+		case SUBSET_SUM:
+			int[] ids = new int[candidates.cardinality()];
+			int[] sizes = new int[ids.length];
+			int i = 0;
+			for (int c = candidates.nextSetBit(0); c >= 0; c = candidates.nextSetBit(c + 1)) {
+				ids[i] = c;
+				sizes[i++] = index.componentSize(c);
+			}
+			for (int pick : new SubsetSumSelector().select(sizes, limit)) {
+				chosen.set(ids[pick]);
+			}
+			break;
+		default:
+			int best = index.largestAtMost(limit, candidates);
+			if (best >= 0)
+				chosen.set(best);
+			break;
+		}
+		return chosen;
+	}
+}
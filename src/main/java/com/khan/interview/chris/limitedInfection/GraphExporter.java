@@ -0,0 +1,270 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+import com.khan.interview.chris.limitedInfection.graph.ConnectedComponents;
+import com.khan.interview.chris.limitedInfection.graph.IndexedGraph;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * GraphExporter writes an infection to a file instead of displaying it, so
+ * rollouts on graphs far too large for {@link GraphViewer} can be looked at
+ * without a desktop session, e.g. with Graphviz (DOT) or Gephi (GEXF).
+ * <p>
+ * Users and relations are streamed straight from the {@link IndexedGraph} to
+ * the writer, every relation once, and infected users are looked up in a
+ * bitset, so memory stays at the size of the graph itself. For millions of
+ * users the component view draws every total infection as a single node
+ * instead, sized by its number of users and coloured from black to red by the
+ * share of them infected.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class GraphExporter {
+
+	/**
+	 * File formats infections can be written in.
+	 */
+	public enum Format {
+		/**
+		 * Graphviz, e.g. <code>sfdp -Tpng</code> to render it.
+		 */
+		DOT,
+
+		/**
+		 * Graph Exchange XML Format, read by Gephi.
+		 */
+		GEXF
+	}
+
+	private final IndexedGraph graph;
+	private Format format = Format.DOT;
+	private int minComponentSize = 1;
+	private ConnectedComponents components;
+
+	/**
+	 * @param graph
+	 *            the users to export
+	 */
+	public GraphExporter(IndexedGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * @param format
+	 *            format to write, DOT by default
+	 */
+	public void setFormat(Format format) {
+		this.format = format;
+	}
+
+	/**
+	 * In the component view, components smaller than the given size are all
+	 * drawn as one node, keeping graphs made of millions of tiny classrooms
+	 * readable.
+	 *
+	 * @param minComponentSize
+	 *            smallest component drawn on its own, 1 by default
+	 */
+	public void setMinComponentSize(int minComponentSize) {
+		this.minComponentSize = minComponentSize;
+	}
+
+	/**
+	 * @param graph
+	 *            the graph the users belong to
+	 * @param infectedUsers
+	 *            the infected users
+	 * @return dense indices of the infected users
+	 */
+	public static BitSet infectedSet(IndexedGraph graph, List<User> infectedUsers) {
+		BitSet infected = new BitSet(graph.size());
+		for (User u : infectedUsers) {
+			int v = graph.indexOf(u);
+			if (v >= 0)
+				infected.set(v);
+		}
+		return infected;
+	}
+
+	/**
+	 * Writes every user and relation, infected users in red.
+	 *
+	 * @param infected
+	 *            dense indices of the infected users
+	 * @param out
+	 *            where to write; not closed, and best buffered
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void writeUsers(BitSet infected, Writer out) throws IOException {
+		int n = graph.size();
+		if (format == Format.DOT) {
+			out.write("graph infection {\n");
+			out.write("  node [style=filled, fillcolor=black, fontcolor=\"#444444\"];\n");
+			for (int v = 0; v < n; v++) {
+				out.write("  n" + v + " [label=\"" + dotEscape(graph.userAt(v).getUsername()) + "\""
+						+ (infected.get(v) ? ", fillcolor=red" : "") + "];\n");
+			}
+			for (int v = 0; v < n; v++) {
+				for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+					int w = graph.neighbour(e);
+					// relations are stored from both ends
+					if (v < w)
+						out.write("  n" + v + " -- n" + w + ";\n");
+				}
+			}
+			out.write("}\n");
+			return;
+		}
+		startGexf(out);
+		out.write("    <nodes>\n");
+		for (int v = 0; v < n; v++) {
+			User u = graph.userAt(v);
+			out.write("      <node id=\"" + v + "\" label=\"" + xmlEscape(u.getUsername()) + "\">"
+					+ gexfColor(infected.get(v) ? 1 : 0) + "</node>\n");
+		}
+		out.write("    </nodes>\n    <edges>\n");
+		long id = 0;
+		for (int v = 0; v < n; v++) {
+			for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+				int w = graph.neighbour(e);
+				if (v < w)
+					out.write("      <edge id=\"" + id++ + "\" source=\"" + v + "\" target=\"" + w + "\"/>\n");
+			}
+		}
+		out.write("    </edges>\n");
+		endGexf(out);
+	}
+
+	/**
+	 * Writes every component as one node, weighted by its number of users and
+	 * coloured by the share of them infected. Components never share a
+	 * relation, so there are no edges.
+	 *
+	 * @param infected
+	 *            dense indices of the infected users
+	 * @param out
+	 *            where to write; not closed, and best buffered
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void writeComponents(BitSet infected, Writer out) throws IOException {
+		if (components == null) {
+			components = ConnectedComponents.of(graph);
+		}
+		int count = components.count();
+		int[] infectedPerComponent = new int[count];
+		for (int v = infected.nextSetBit(0); v >= 0; v = infected.nextSetBit(v + 1)) {
+			infectedPerComponent[components.componentOf(v)]++;
+		}
+		long smallUsers = 0;
+		long smallInfected = 0;
+		int smallComponents = 0;
+
+		if (format == Format.DOT) {
+			out.write("graph components {\n");
+			out.write("  node [shape=circle, style=filled, fontcolor=white];\n");
+		} else {
+			startGexf(out);
+			out.write("    <attributes class=\"node\">\n"
+					+ "      <attribute id=\"users\" title=\"users\" type=\"long\"/>\n"
+					+ "      <attribute id=\"infected\" title=\"infected\" type=\"long\"/>\n"
+					+ "    </attributes>\n    <nodes>\n");
+		}
+		for (int c = 0; c < count; c++) {
+			int size = components.componentSize(c);
+			if (size < minComponentSize) {
+				smallComponents++;
+				smallUsers += size;
+				smallInfected += infectedPerComponent[c];
+				continue;
+			}
+			writeComponent("c" + c, "component " + c, size, infectedPerComponent[c], out);
+		}
+		if (smallComponents > 0) {
+			writeComponent("small", smallComponents + " components under " + minComponentSize, smallUsers,
+					smallInfected, out);
+		}
+		if (format == Format.DOT) {
+			out.write("}\n");
+		} else {
+			out.write("    </nodes>\n");
+			endGexf(out);
+		}
+	}
+
+	private void writeComponent(String id, String label, long users, long infectedUsers, Writer out)
+			throws IOException {
+		double ratio = users == 0 ? 0 : (double) infectedUsers / users;
+		// area grows with the number of users
+		double size = Math.sqrt(users);
+		if (format == Format.DOT) {
+			out.write("  " + id + " [label=\"" + label + "\\n" + infectedUsers + "/" + users + "\", width="
+					+ String.format(Locale.ROOT, "%.2f", 0.5 + size / 10) + ", fillcolor=\"" + dotColor(ratio)
+					+ "\"];\n");
+			return;
+		}
+		out.write("      <node id=\"" + id + "\" label=\"" + label + "\">\n        <attvalues>"
+				+ "<attvalue for=\"users\" value=\"" + users + "\"/><attvalue for=\"infected\" value=\""
+				+ infectedUsers + "\"/></attvalues>\n        " + gexfColor(ratio) + "<viz:size value=\""
+				+ String.format(Locale.ROOT, "%.2f", 1 + size) + "\"/>\n      </node>\n");
+	}
+
+	private static void startGexf(Writer out) throws IOException {
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<gexf xmlns=\"http://www.gexf.net/1.2draft\" xmlns:viz=\"http://www.gexf.net/1.2draft/viz\""
+				+ " version=\"1.2\">\n  <graph defaultedgetype=\"undirected\">\n");
+	}
+
+	private static void endGexf(Writer out) throws IOException {
+		out.write("  </graph>\n</gexf>\n");
+	}
+
+	private static int red(double ratio) {
+		return (int) Math.round(255 * ratio);
+	}
+
+	private static String dotColor(double ratio) {
+		return String.format(Locale.ROOT, "#%02x0000", red(ratio));
+	}
+
+	private static String gexfColor(double ratio) {
+		return "<viz:color r=\"" + red(ratio) + "\" g=\"0\" b=\"0\"/>";
+	}
+
+	private static String dotEscape(String s) {
+		return s == null ? "" : s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private static String xmlEscape(String s) {
+		if (s == null)
+			return "";
+		StringBuilder escaped = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char ch = s.charAt(i);
+			switch (ch) {
+			case '&':
+				escaped.append("&amp;");
+				break;
+			case '<':
+				escaped.append("&lt;");
+				break;
+			case '>':
+				escaped.append("&gt;");
+				break;
+			case '"':
+				escaped.append("&quot;");
+				break;
+			default:
+				escaped.append(ch);
+			}
+		}
+		return escaped.toString();
+	}
+}
@@ -1,15 +1,27 @@
 package com.khan.interview.chris.limitedInfection;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.graphstream.algorithm.generator.Generator;
 import org.graphstream.algorithm.generator.RandomGenerator;
+import org.graphstream.graph.Edge;
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.Node;
 import org.graphstream.graph.implementations.SingleGraph;
 
+import com.khan.interview.chris.limitedInfection.graph.IndexedGraph;
 import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+import com.khan.interview.chris.limitedInfection.model.RelationLoader;
 import com.khan.interview.chris.limitedInfection.model.User;
 
 /**
@@ -23,6 +35,11 @@ import com.khan.interview.chris.limitedInfection.model.User;
  * <li>Visualization of finding the best limited infection from an entire graph
  * </li>
  * </ul>
+ * <p>
+ * Given an output file, the infection is written headlessly with
+ * {@link GraphExporter} instead of displayed, as DOT or (for a .gexf file)
+ * GEXF, optionally collapsed into one node per component.
+ * </p>
  * 
  * 
  * @author Christopher Chen
@@ -30,20 +47,25 @@ import com.khan.interview.chris.limitedInfection.model.User;
  */
 public class GraphViewer {
 	// Run from providing commandline/console arguments
-	public static void main(String args[]) {
+	public static void main(String args[]) throws IOException {
 		// Prints basic templates
 		System.out.println("Limited Infection Visualize: [type_of_visualize = 0, size_of_graph, limit]");
 		System.out.println("Total Infection Visualize: [type_of_visualize = 1, size_of_graph, start_node_index]");
-		if (args.length != 3) {
+		System.out.println("Headless Export: [..., output_file(.dot or .gexf), (optional) components]");
+		if (args.length < 3 || args.length > 5) {
 			System.out.println(
 					"commandline args in form [type_of_visualize(limited: 0, total : 1), size_of_graph, limit or start_node_index] are required");
 			System.exit(1);
 		}
 		int limitedOrTotal = Integer.valueOf(args[0]);
 		int graphSize = Integer.valueOf(args[1]);
-		// generate random user graph
-		List<User> users = generateRandomUserGraph(Integer.valueOf(graphSize));
-		InfectionController controller = new InfectionController();
+		String output = args.length > 3 ? args[3] : null;
+		// generate random user graph; GraphStream is too slow for the sizes
+		// worth exporting
+		List<User> users = output == null ? generateRandomUserGraph(Integer.valueOf(graphSize))
+				: UserGraphGenerator.generateRandomUsers(graphSize, 2, 1);
+		InfectionController controller = output == null ? new InfectionController()
+				: new InfectionController(users);
 
 		if (limitedOrTotal != 0 && limitedOrTotal != 1) {
 			System.out.println(
@@ -73,6 +95,12 @@ public class GraphViewer {
 			System.out.println("GraphSize: " + graphSize + " Limit: " + limit);
 			System.out.println("Size of best limited infection found: " + infectedUsers.size());
 		}
+		if (output != null) {
+			boolean byComponent = args.length > 4 && "components".equals(args[4]);
+			exportGraph(controller.getGraph(), infectedUsers, Paths.get(output), byComponent);
+			System.out.println("Written to " + output);
+			return;
+		}
 		Graph graph = buildGraph(users, infectedUsers);
 		graph.display();
 
@@ -89,6 +117,7 @@ public class GraphViewer {
 	 * @return
 	 */
 	public static Graph buildGraph(List<User> allUsers, List<User> infectedUsers) {
+		Set<User> infected = new HashSet<User>(infectedUsers);
 		Graph graphView = new SingleGraph("InfectionView");
 		graphView.addAttribute("ui.stylesheet", stylesheet);
 		graphView.addAttribute("ui.default.title", "InfectionGraph");
@@ -98,21 +127,52 @@ public class GraphViewer {
 		for (User u : allUsers) {
 			aNode = graphView.addNode(u.getUID());
 			aNode.addAttribute("ui.label", u.getUsername());
-			if (infectedUsers.contains(u)) {
+			if (infected.contains(u)) {
 				aNode.addAttribute("ui.class", "infected");
 			}
-			// add edges to all adjacent nodes
+			// add edges to all adjacent nodes, once per relation
 			List<User> adjacentUsers = u.getRelatedUsers();
 			for (User aU : adjacentUsers) {
-				graphView.addEdge(u.getUID() + "-" + aU.getUID(), u.getUID(), aU.getUID());
+				if (u.getUID().compareTo(aU.getUID()) < 0)
+					graphView.addEdge(u.getUID() + "-" + aU.getUID(), u.getUID(), aU.getUID());
 			}
 		}
 		return graphView;
 	}
 
+	/**
+	 * Writes the infection to a file without displaying it, as GEXF if the
+	 * file name ends in .gexf and as DOT otherwise.
+	 * 
+	 * @param graph
+	 *            the users to export
+	 * @param infectedUsers
+	 *            all of the users that are infected
+	 * @param output
+	 *            file to write
+	 * @param byComponent
+	 *            write one node per component rather than per user
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public static void exportGraph(IndexedGraph graph, List<User> infectedUsers, Path output, boolean byComponent)
+			throws IOException {
+		GraphExporter exporter = new GraphExporter(graph);
+		if (output.toString().endsWith(".gexf"))
+			exporter.setFormat(GraphExporter.Format.GEXF);
+		BitSet infected = GraphExporter.infectedSet(graph, infectedUsers);
+		try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			if (byComponent)
+				exporter.writeComponents(infected, out);
+			else
+				exporter.writeUsers(infected, out);
+		}
+	}
+
 	/**
 	 * Generates a random graph of users using the GraphStream library and
-	 * integrating the Users class
+	 * integrating the Users class. For graphs too large to go through
+	 * GraphStream, see {@link UserGraphGenerator}.
 	 * 
 	 * @param numberNodes
 	 *            - the number of nodes desired in the graph
@@ -130,26 +190,20 @@ public class GraphViewer {
 		int n = graph.getNodeCount();
 		// convert node to user
 		List<User> users = new ArrayList<User>(n);
-		// build 2d adjacent matrix representation of the graph
-
-		int[][] matrix = new int[n][n];
 		for (int i = 0; i < n; i++) {
-			User u = makeUser(graph.getNode(i));
-			users.add(u);
-
-			for (int j = 0; j < n; j++) {
-				matrix[i][j] = graph.getNode(i).hasEdgeBetween(j) ? 1 : 0;
-			}
+			users.add(makeUser(graph.getNode(i)));
 		}
 
-		// build adjacent lists
-		for (int i = 0; i < n; i++) {
-			for (int j = 0; j < n; j++) {
-				if (matrix[i][j] == 1) {
-					users.get(i).addRelatedUser(users.get(j));
-				}
-			}
+		// stream the edges straight into the users' relations
+		int[] from = new int[graph.getEdgeCount()];
+		int[] to = new int[from.length];
+		int e = 0;
+		for (Edge edge : graph.<Edge> getEachEdge()) {
+			from[e] = edge.getNode0().getIndex();
+			to[e] = edge.getNode1().getIndex();
+			e++;
 		}
+		RelationLoader.load(users, from, to, e);
 		return users;
 
 	}
@@ -1,16 +1,50 @@
 package com.khan.interview.chris.limitedInfection;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.khan.interview.chris.limitedInfection.deploy.Deployment;
+import com.khan.interview.chris.limitedInfection.deploy.DeploymentJournal;
+import com.khan.interview.chris.limitedInfection.deploy.DeploymentPipeline;
+import com.khan.interview.chris.limitedInfection.deploy.FeatureAssignments;
+import com.khan.interview.chris.limitedInfection.graph.BfsIterator;
+import com.khan.interview.chris.limitedInfection.graph.CohortPartitioner;
+import com.khan.interview.chris.limitedInfection.graph.Cohorts;
+import com.khan.interview.chris.limitedInfection.graph.ComponentCache;
+import com.khan.interview.chris.limitedInfection.graph.ComponentIndex;
+import com.khan.interview.chris.limitedInfection.graph.ComponentListener;
+import com.khan.interview.chris.limitedInfection.graph.ConnectedComponents;
+import com.khan.interview.chris.limitedInfection.graph.DynamicComponents;
+import com.khan.interview.chris.limitedInfection.graph.IndexedGraph;
+import com.khan.interview.chris.limitedInfection.graph.ParallelBfs;
+import com.khan.interview.chris.limitedInfection.graph.PartialInfection;
+import com.khan.interview.chris.limitedInfection.graph.Traversal;
+import com.khan.interview.chris.limitedInfection.graph.UserGraph;
+import com.khan.interview.chris.limitedInfection.metrics.InfectionMetrics;
+import com.khan.interview.chris.limitedInfection.model.FeatureRegistry;
 import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
 import com.khan.interview.chris.limitedInfection.model.User;
+import com.khan.interview.chris.limitedInfection.planner.CohortAllocator;
+import com.khan.interview.chris.limitedInfection.planner.RampPlanner;
+import com.khan.interview.chris.limitedInfection.planner.SubsetSumSelector;
 
 /**
  * The InfectionController class serves as the manager for the initial infection
@@ -36,21 +70,328 @@ import com.khan.interview.chris.limitedInfection.model.User;
  * users that are infected. Limited infection then looks to infect close to a
  * certain number of users. Because consistency throughout classrooms (coach to
  * students) is the most important concern, if there's no way to provide an
- * infection starting from <strong> one </strong> (in current implementation) of
- * the users provided, no infection occurs.
+ * infection starting from <strong> one </strong> (by default) or a combination
+ * (with {@link LimitedInfectionStrategy#SUBSET_SUM}) of the users provided, no
+ * infection occurs. When some inconsistency is acceptable,
+ * {@link LimitedInfectionStrategy#PARTIAL} instead stops the infection at the
+ * limit, splitting total infections along as few classrooms as it can.
  * </p>
  * 
  * @author Christopher Chen
  */
 public class InfectionController {
 
+	// compact snapshot of the user graph, null when walking Users directly
+	private final IndexedGraph graph;
+	// component index to answer infections from: either a live index handed
+	// in, or the labelling of graph computed on first use
+	private ComponentIndex components;
+	// how total infections are walked on graph
+	private Traversal traversal = new ParallelBfs();
+	// where deployed features are recorded, null to set them on the Users
+	private FeatureAssignments assignments;
+	// persists deployed features in the background, null for none
+	private DeploymentPipeline pipeline;
+	private Deployment lastDeployment;
+	private Map<KhanSiteFeature, Deployment> lastDeployments;
+	// write-ahead log of features set on the Users, null for none
+	private DeploymentJournal journal;
+	// release ids the journal is keyed by, set with journal
+	private FeatureRegistry registry;
+	private long lastRolloutId = -1;
+	private PartialInfection lastPartialInfection;
+	// rollout cohorts of graph, null for none
+	private Cohorts cohorts;
+	// where timings and sizes are recorded, null to skip measuring entirely
+	private InfectionMetrics metrics;
+	// members of recently infected components, null for none
+	private ComponentCache<List<User>> cache;
+	private ComponentListener invalidator;
+
 	/**
-	 * Constructor for the InfectionController that provides a graph in the form
-	 * of a list of users. The look up userID to user map is also created at the
-	 * same time.
+	 * Constructor for an InfectionController that walks the relations of the
+	 * User objects directly on every call.
 	 */
 	public InfectionController() {
-		// empty constructor
+		this.graph = null;
+	}
+
+	/**
+	 * Constructor for an InfectionController that answers every infection from
+	 * a component index kept current as relations change, without traversing
+	 * the graph.
+	 * 
+	 * @param components
+	 *            the live index of the users' components
+	 */
+	public InfectionController(DynamicComponents components) {
+		this.graph = null;
+		this.components = components;
+	}
+
+	/**
+	 * Constructor for the InfectionController that provides a graph in the form
+	 * of a list of users. The users (and everyone reachable from them) are
+	 * indexed once into a {@link UserGraph} that all infections then run on.
+	 * 
+	 * @param users
+	 *            the users making up the graph
+	 */
+	public InfectionController(List<User> users) {
+		this.graph = UserGraph.of(users);
+	}
+
+	/**
+	 * Constructor for an InfectionController on a graph that is already
+	 * indexed, e.g. a
+	 * {@link com.khan.interview.chris.limitedInfection.graph.MappedUserGraph}
+	 * snapshot, so starting up costs no more than mapping the file and the
+	 * graph doesn't have to fit in heap.
+	 * Infected Users are resolved by the graph as they are returned. Unless
+	 * the graph {@link IndexedGraph#hasCanonicalUsers() hands back the same
+	 * Users} every time, deploy to {@link #setAssignments assignments} or a
+	 * {@link #setPipeline pipeline}, which keep features by dense index;
+	 * deploying to the Users otherwise fails.
+	 * 
+	 * @param graph
+	 *            the graph all infections run on
+	 */
+	public InfectionController(IndexedGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * @return the snapshot of the user graph infections are walked on, or null
+	 *         if the controller walks User objects or a component index
+	 */
+	public IndexedGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @param traversal
+	 *            the breadth first search used for total infections on the
+	 *            graph, parallel by default
+	 */
+	public void setTraversal(Traversal traversal) {
+		this.traversal = traversal;
+	}
+
+	/**
+	 * Records deployed features in the given store, by dense user index,
+	 * instead of setting {@link User#setCurrentFeature(KhanSiteFeature)} on
+	 * every infected user. The store is written under its own lock, so read it
+	 * under that lock while deployments are running.
+	 * 
+	 * @param assignments
+	 *            the store to deploy to, or null to deploy to the Users again
+	 * @throws IllegalStateException
+	 *             if the controller walks User objects directly, since there
+	 *             are no dense indices to key the store by
+	 */
+	public void setAssignments(FeatureAssignments assignments) {
+		if (assignments != null && graph == null && components == null) {
+			throw new IllegalStateException("Feature assignments need a controller built on a graph or component index");
+		}
+		this.assignments = assignments;
+	}
+
+	/**
+	 * @return the store deployed features are recorded in, or null if they are
+	 *         set on the Users
+	 */
+	public FeatureAssignments getAssignments() {
+		return assignments;
+	}
+
+	/**
+	 * Sends every deployed feature through the given pipeline, by dense user
+	 * index, instead of setting it on the Users. The infection is returned as
+	 * soon as it is computed and {@link #getLastDeployment()} tracks it being
+	 * persisted. Can be combined with {@link #setAssignments}: the controller
+	 * writes to the store under its lock, like a
+	 * {@link com.khan.interview.chris.limitedInfection.deploy.StoreAssignmentSink}.
+	 * 
+	 * @param pipeline
+	 *            the pipeline to deploy through, or null for none
+	 * @throws IllegalStateException
+	 *             if the controller walks User objects directly, since there
+	 *             are no dense indices to deploy
+	 */
+	public void setPipeline(DeploymentPipeline pipeline) {
+		if (pipeline != null && graph == null && components == null) {
+			throw new IllegalStateException("A deployment pipeline needs a controller built on a graph or component index");
+		}
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * @return the deployment started by the last infection sent through the
+	 *         pipeline, or null if there was none
+	 */
+	public Deployment getLastDeployment() {
+		return lastDeployment;
+	}
+
+	/**
+	 * @return the deployments started by the last
+	 *         {@link #limited_infections} sent through the pipeline, one per
+	 *         feature in the order of its targets, or null if there was none
+	 */
+	public Map<KhanSiteFeature, Deployment> getLastDeployments() {
+		return lastDeployments;
+	}
+
+	/**
+	 * Records every feature set on the Users in the given journal before
+	 * setting it, with the feature each user had before, so a rollout can be
+	 * undone with {@link #rollback(long)} without traversing the graph again.
+	 * Features deployed to {@link #setAssignments assignments} or through a
+	 * {@link #setPipeline pipeline} are not journaled.
+	 * 
+	 * @param journal
+	 *            the journal to record in, or null for none
+	 * @param registry
+	 *            registry every version of a feature deployed or replaced was
+	 *            registered with, whose {@link FeatureRegistry#releaseId
+	 *            release ids} are journaled so every version is restored as it
+	 *            was
+	 * @throws IllegalStateException
+	 *             if the controller isn't built on a graph, since there are no
+	 *             dense indices to journal, or on a graph that doesn't
+	 *             {@link IndexedGraph#hasCanonicalUsers() keep its Users}, whose
+	 *             features could be neither journaled nor restored
+	 * @throws IllegalArgumentException
+	 *             if a journal is given without a registry
+	 */
+	public void setJournal(DeploymentJournal journal, FeatureRegistry registry) {
+		if (journal != null && graph == null) {
+			throw new IllegalStateException("A deployment journal needs a controller built on a graph");
+		}
+		if (journal != null && !graph.hasCanonicalUsers()) {
+			throw new IllegalStateException("A deployment journal needs a graph that keeps its Users");
+		}
+		if (journal != null && registry == null) {
+			throw new IllegalArgumentException("A deployment journal needs a feature registry");
+		}
+		this.journal = journal;
+		this.registry = journal == null ? null : registry;
+	}
+
+	/**
+	 * @return id of the rollout the last journaled infection was recorded
+	 *         under, or -1 if there was none
+	 */
+	public long getLastRolloutId() {
+		return lastRolloutId;
+	}
+
+	/**
+	 * Undoes a journaled rollout, giving every user of it back the feature
+	 * they had before. Roll back the newest rollout first when several
+	 * touched the same users.
+	 * 
+	 * @param rolloutId
+	 *            the rollout to undo, see {@link #getLastRolloutId()}
+	 * @return number of users whose feature was restored
+	 * @throws IllegalStateException
+	 *             if there is no journal or the rollout was already rolled back
+	 * @throws UncheckedIOException
+	 *             if the journal can't be written
+	 */
+	public int rollback(long rolloutId) {
+		if (journal == null) {
+			throw new IllegalStateException("No deployment journal to roll back from");
+		}
+		List<DeploymentJournal.Batch> inverse;
+		try {
+			inverse = journal.rollback(rolloutId);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		int restored = 0;
+		for (DeploymentJournal.Batch batch : inverse) {
+			int releaseId = batch.getFeatureId();
+			KhanSiteFeature feature = releaseId == DeploymentJournal.NO_FEATURE ? null : registry.release(releaseId);
+			BitSet users = batch.getUsers();
+			for (int u = users.nextSetBit(0); u >= 0; u = users.nextSetBit(u + 1)) {
+				graph.userAt(u).setCurrentFeature(feature);
+				restored++;
+			}
+		}
+		return restored;
+	}
+
+	/**
+	 * @return the last infection made with
+	 *         {@link LimitedInfectionStrategy#PARTIAL}, with the number of
+	 *         relations it broke, or null if there was none
+	 */
+	public PartialInfection getLastPartialInfection() {
+		return lastPartialInfection;
+	}
+
+	/**
+	 * Records how long infections take, how many users and relations they
+	 * visit and how much they allocate. Without metrics no clock is read.
+	 * 
+	 * @param metrics
+	 *            where to record, or null for nowhere
+	 */
+	public void setMetrics(InfectionMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return where infections are recorded, or null
+	 */
+	public InfectionMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the cohorts {@link LimitedInfectionStrategy#COHORTS} chooses from.
+	 * Partitioning takes a while on a large graph, so it is done once up front
+	 * with a {@link CohortPartitioner}.
+	 * 
+	 * @param cohorts
+	 *            cohorts of this controller's users, or null for none
+	 */
+	public void setCohorts(Cohorts cohorts) {
+		this.cohorts = cohorts;
+	}
+
+	/**
+	 * Answers total infections from a cache of component members instead of
+	 * traversing the graph every time. With a {@link DynamicComponents} index,
+	 * entries are dropped as relations change their components. The cache
+	 * belongs to this controller and must not be shared with another one.
+	 * 
+	 * @param cache
+	 *            the cache to use, or null for none
+	 * @throws IllegalStateException
+	 *             if the controller walks User objects directly, since there
+	 *             are no components to key the cache by
+	 */
+	public void setCache(ComponentCache<List<User>> cache) {
+		if (cache != null && graph == null && components == null) {
+			throw new IllegalStateException("A component cache needs a controller built on a graph or component index");
+		}
+		if (components instanceof DynamicComponents && this.cache != null) {
+			((DynamicComponents) components).removeListener(invalidator);
+		}
+		this.cache = cache;
+		if (components instanceof DynamicComponents && cache != null) {
+			invalidator = cache.invalidator(0);
+			((DynamicComponents) components).addListener(invalidator);
+		}
+	}
+
+	/**
+	 * @return the cache total infections are answered from, or null
+	 */
+	public ComponentCache<List<User>> getCache() {
+		return cache;
 	}
 
 	/**
@@ -63,20 +404,148 @@ public class InfectionController {
 	 *            The list of users to serve as the initial infection point(s)
 	 * @param feature
 	 *            The KhanSiteFeature to act as the "virus" and be deployed
+	 * @throws IllegalStateException
+	 *             if the feature would be set on Users the graph doesn't keep,
+	 *             see {@link #InfectionController(IndexedGraph)}
 	 */
 	public List<User> total_infection(List<User> users, KhanSiteFeature feature) {
-		List<User> toInfect = new ArrayList<User>();
-		for (User user : users) {
-			List<User> connectedToUser = getConnectedUsers(user);
-			for (User u : connectedToUser) {
-				if (!toInfect.contains(u))
-					toInfect.add(u);
+		InfectionMetrics measure = metrics;
+		if (measure == null)
+			return totalInfection(users, feature);
+		long allocated = InfectionMetrics.threadAllocatedBytes();
+		long start = System.nanoTime();
+		List<User> toInfect = totalInfection(users, feature);
+		measure.recordTotalInfection(System.nanoTime() - start, toInfect.size());
+		measure.recordAllocationSince(allocated);
+		return toInfect;
+	}
+
+	private List<User> totalInfection(List<User> users, KhanSiteFeature feature) {
+		if (cache != null) {
+			final ComponentIndex index = getComponents();
+			List<User> toInfect = new ArrayList<User>();
+			BitSet infected = index.componentsOf(users);
+			for (int c = infected.nextSetBit(0); c >= 0; c = infected.nextSetBit(c + 1)) {
+				List<User> members = cache.get(0, c, new ComponentCache.Loader<List<User>>() {
+					@Override
+					public List<User> load(int component) {
+						return Collections.unmodifiableList(index.members(component));
+					}
+				});
+				if (metrics != null)
+					metrics.recordComponent(members.size());
+				toInfect.addAll(members);
 			}
+			deployFeatureToUsers(feature, toInfect);
+			return toInfect;
 		}
+		if (graph != null) {
+			int[] infected = traverse(graph.indicesOf(users));
+			List<User> toInfect = graph.toUsers(infected);
+			// skip mapping the users back to indices
+			if (assignments != null || pipeline != null)
+				deployFeatureToIndices(feature, infected);
+			else
+				deployFeatureToUsers(feature, toInfect);
+			return toInfect;
+		}
+		if (components != null) {
+			List<User> toInfect = new ArrayList<User>();
+			BitSet infected = components.componentsOf(users);
+			for (int c = infected.nextSetBit(0); c >= 0; c = infected.nextSetBit(c + 1)) {
+				List<User> members = components.members(c);
+				if (metrics != null)
+					metrics.recordComponent(members.size());
+				toInfect.addAll(members);
+			}
+			deployFeatureToUsers(feature, toInfect);
+			return toInfect;
+		}
+		// one search from all starting points at once, so no user is visited
+		// (or added) twice
+		List<User> toInfect = getConnectedUsers(users);
 		deployFeatureToUsers(feature, toInfect);
 		return toInfect;
 	}
 
+	/**
+	 * Lazily finds the users {@link #total_infection} would infect, without
+	 * deploying to them. Users are yielded as the search discovers them and
+	 * the search only goes as far as the stream is consumed, so a short-circuit
+	 * operation like <code>limit</code> or <code>anyMatch</code> skips the
+	 * rest of the component.
+	 * 
+	 * @param users
+	 *            The list of users to serve as the initial infection point(s)
+	 * @return a sequential stream of every user connected to one of the users,
+	 *         each once
+	 */
+	public Stream<User> streamTotalInfection(List<User> users) {
+		if (graph != null) {
+			return BfsIterator.stream(graph, graph.indicesOf(users)).mapToObj(new IntFunction<User>() {
+				@Override
+				public User apply(int v) {
+					return graph.userAt(v);
+				}
+			});
+		}
+		if (components != null) {
+			// not flatMap, which pushes every member of a component before a
+			// short-circuit operation can stop it
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+					new ComponentMemberIterator(components, components.componentsOf(users)),
+					Spliterator.DISTINCT | Spliterator.NONNULL), false);
+		}
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new ConnectedUserIterator(users),
+				Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * Deploys the feature to the total infection of the given users, like
+	 * {@link #total_infection}, but straight from the search without building
+	 * a list of the infected users.
+	 * 
+	 * @param users
+	 *            The list of users to serve as the initial infection point(s)
+	 * @param feature
+	 *            The KhanSiteFeature to act as the "virus" and be deployed
+	 * @return number of users infected
+	 * @throws IllegalStateException
+	 *             if the feature would be set on Users the graph doesn't keep,
+	 *             see {@link #InfectionController(IndexedGraph)}
+	 */
+	public int deployTotalInfection(List<User> users, KhanSiteFeature feature) {
+		if (assignments != null || pipeline != null) {
+			int[] infected;
+			if (graph != null) {
+				infected = traverse(graph.indicesOf(users));
+			} else {
+				infected = streamTotalInfection(users).mapToInt(new ToIntFunction<User>() {
+					@Override
+					public int applyAsInt(User u) {
+						return components.indexOf(u);
+					}
+				}).toArray();
+			}
+			deployFeatureToIndices(feature, infected);
+			return infected.length;
+		}
+		checkCanonicalUsers();
+		if (journal != null) {
+			int[] infected = traverse(graph.indicesOf(users));
+			journal(feature, infected);
+			for (int v : infected) {
+				graph.userAt(v).setCurrentFeature(feature);
+			}
+			return infected.length;
+		}
+		int count = 0;
+		for (Iterator<User> it = streamTotalInfection(users).iterator(); it.hasNext(); count++) {
+			it.next().setCurrentFeature(feature);
+		}
+		return count;
+	}
+
 	/**
 	 * Initiate limited infection by infecting a path starting with the one User
 	 * whose total_infection will be closest, but under, the limit. If none
@@ -85,11 +554,8 @@ public class InfectionController {
 	 * consistency between coaches and students. Preventing inconsistencies
 	 * within a classroom is more valuable than satisfying a quota.
 	 * <p>
-	 * Another interesting approach would be to follow same algorithms used to
-	 * compute the sizes of total infections as done here, but to then create a
-	 * subset sum-esque problem (dynamic programming!) where the goal is to find
-	 * the subset of users out of the given users list to find the closest
-	 * disjoint total infections to get closer to the limit in more cases.
+	 * To combine several disjoint total infections and get closer to the limit
+	 * in more cases, use {@link LimitedInfectionStrategy#SUBSET_SUM}.
 	 * </p>
 	 * 
 	 * @param users
@@ -100,9 +566,59 @@ public class InfectionController {
 	 *             error.
 	 */
 	public List<User> limited_infection(List<User> users, int limit, KhanSiteFeature feature) {
+		return limited_infection(users, limit, feature, LimitedInfectionStrategy.SINGLE_COMPONENT);
+	}
+
+	/**
+	 * Initiate limited infection using the given strategy to choose which total
+	 * infections, starting from the users provided, are deployed to.
+	 * <p>
+	 * With {@link LimitedInfectionStrategy#SUBSET_SUM} the subset of disjoint
+	 * total infections whose combined size is closest to, but under, the limit
+	 * is found with dynamic programming (see {@link SubsetSumSelector}).
+	 * </p>
+	 * 
+	 * @param users
+	 *            list of users to check for possible total infections from
+	 * @param limit
+	 *            cap to number of users to infect
+	 * @param feature
+	 *            The KhanSiteFeature to be deployed
+	 * @param strategy
+	 *            how to choose the total infections to deploy to
+	 * @throws IllegalArgumentException
+	 *             If there is no possible infection that will be under the
+	 *             provided limit
+	 */
+	public List<User> limited_infection(List<User> users, int limit, KhanSiteFeature feature,
+			LimitedInfectionStrategy strategy) {
+		InfectionMetrics measure = metrics;
+		if (measure == null)
+			return limitedInfection(users, limit, feature, strategy);
+		long allocated = InfectionMetrics.threadAllocatedBytes();
+		long start = System.nanoTime();
+		List<User> toInfect;
+		try {
+			toInfect = limitedInfection(users, limit, feature, strategy);
+		} catch (RuntimeException e) {
+			measure.recordFailedLimitedInfection(System.nanoTime() - start);
+			throw e;
+		}
+		measure.recordLimitedInfection(System.nanoTime() - start, toInfect.size());
+		measure.recordAllocationSince(allocated);
+		return toInfect;
+	}
+
+	private List<User> limitedInfection(List<User> users, int limit, KhanSiteFeature feature,
+			LimitedInfectionStrategy strategy) {
+		if (strategy == LimitedInfectionStrategy.PARTIAL) {
+			return partialInfection(users, limit, feature);
+		}
+		if (strategy == LimitedInfectionStrategy.COHORTS) {
+			return cohortInfection(users, limit, feature);
+		}
 		// this will deploy to that branch
-		List<User> toInfect = new ArrayList<User>();
-		toInfect = limitedInfectionRoute(users, limit);
+		List<User> toInfect = limitedInfectionRoute(users, limit, strategy);
 		if (toInfect.isEmpty()) {
 			throw new IllegalArgumentException(
 					"There are no infections that maintain consistency and are under/equal to the limit");
@@ -111,78 +627,359 @@ public class InfectionController {
 		return toInfect;
 	}
 
+	/**
+	 * Grows the infection from the users and stops at the limit. Without a
+	 * graph, the graph around the users is built for this call, so only a
+	 * controller built on a list of users gets the cost of the search down to
+	 * the limit.
+	 */
+	private List<User> partialInfection(List<User> users, int limit, KhanSiteFeature feature) {
+		IndexedGraph on = graph != null ? graph : UserGraph.of(users);
+		PartialInfection infection = PartialInfection.grow(on, limit, on.indicesOf(users));
+		if (infection.size() == 0) {
+			throw new IllegalArgumentException("There are no users to infect under/equal to the limit");
+		}
+		lastPartialInfection = infection;
+		int[] infected = infection.members();
+		List<User> toInfect = on.toUsers(infected);
+		if (graph != null && (assignments != null || pipeline != null))
+			deployFeatureToIndices(feature, infected);
+		else
+			deployFeatureToUsers(feature, toInfect);
+		return toInfect;
+	}
+
+	/**
+	 * Plans limited infections for many features at once and deploys them.
+	 * Every feature gets its own whole total infections (or cohorts, if set)
+	 * under its target, and no user gets two of the features. See
+	 * {@link CohortAllocator}. Through a pipeline, every feature is a
+	 * deployment of its own, see {@link #getLastDeployments()}.
+	 * 
+	 * @param users
+	 *            list of users whose total infections (or cohorts) may be
+	 *            infected
+	 * @param targets
+	 *            cap on the number of users infected, per feature
+	 * @return the users infected, per feature in the order of targets; empty
+	 *         for a feature nothing could be found for
+	 */
+	public Map<KhanSiteFeature, List<User>> limited_infections(List<User> users,
+			Map<KhanSiteFeature, Integer> targets) {
+		ComponentIndex index = cohorts != null ? cohorts : componentsFor(users);
+		CohortAllocator allocator = new CohortAllocator(index);
+		for (Map.Entry<KhanSiteFeature, Integer> target : targets.entrySet()) {
+			allocator.addTarget(target.getKey(), target.getValue());
+		}
+		Map<KhanSiteFeature, List<User>> infected = new LinkedHashMap<KhanSiteFeature, List<User>>();
+		Map<KhanSiteFeature, Deployment> deployments = new LinkedHashMap<KhanSiteFeature, Deployment>();
+		for (CohortAllocator.Allocation allocation : allocator.allocate(index.componentsOf(users)).values()) {
+			List<User> toInfect = allocation.users();
+			deployFeatureToUsers(allocation.getFeature(), toInfect);
+			infected.put(allocation.getFeature(), toInfect);
+			if (pipeline != null)
+				deployments.put(allocation.getFeature(), lastDeployment);
+		}
+		if (pipeline != null)
+			lastDeployments = deployments;
+		return infected;
+	}
+
+	/**
+	 * Starts a staged rollout over the total infections of the given users,
+	 * or over their cohorts if cohorts have been set. Stages are then deployed
+	 * with {@link #ramp_infection}. The component ids of a
+	 * {@link DynamicComponents} index change as relations do, so on a
+	 * controller built on one the rollout plans over a snapshot of the users'
+	 * components taken now; relations added later don't join the rollout.
+	 * 
+	 * @param users
+	 *            list of users whose total infections (or cohorts) the rollout
+	 *            may reach
+	 * @return the planner keeping track of the stages
+	 */
+	public RampPlanner newRamp(List<User> users) {
+		ComponentIndex index;
+		if (cohorts != null)
+			index = cohorts;
+		else if (components instanceof DynamicComponents)
+			index = ConnectedComponents.of(UserGraph.of(users));
+		else
+			index = componentsFor(users);
+		return new RampPlanner(index, users);
+	}
+
+	/**
+	 * Grows a staged rollout to the next limit, deploying the feature only to
+	 * the users the stage adds. Users infected by earlier stages keep the
+	 * feature.
+	 * 
+	 * @param ramp
+	 *            planner made by {@link #newRamp(List)}
+	 * @param limit
+	 *            cap to number of users infected after this stage
+	 * @param feature
+	 *            The KhanSiteFeature to be deployed
+	 * @return the users added by this stage, possibly none
+	 * @throws IllegalArgumentException
+	 *             if the limit is below the one of the previous stage
+	 */
+	public List<User> ramp_infection(RampPlanner ramp, int limit, KhanSiteFeature feature) {
+		List<User> toInfect = ramp.nextStageUsers(limit);
+		deployFeatureToUsers(feature, toInfect);
+		return toInfect;
+	}
+
+	/**
+	 * Deploys to the combination of cohorts, containing the users, closest to
+	 * the limit.
+	 */
+	private List<User> cohortInfection(List<User> users, int limit, KhanSiteFeature feature) {
+		if (cohorts == null) {
+			throw new IllegalStateException("No cohorts have been set");
+		}
+		BitSet chosen = ComponentChoice.choose(cohorts, cohorts.componentsOf(users), limit,
+				LimitedInfectionStrategy.SUBSET_SUM);
+		if (chosen.isEmpty()) {
+			throw new IllegalArgumentException("There are no cohorts under/equal to the limit");
+		}
+		List<User> toInfect = new ArrayList<User>();
+		for (int c = chosen.nextSetBit(0); c >= 0; c = chosen.nextSetBit(c + 1)) {
+			toInfect.addAll(cohorts.members(c));
+		}
+		deployFeatureToUsers(feature, toInfect);
+		return toInfect;
+	}
+
 	/**
 	 * Finds the entire list of Users (based on total infection) to infect
-	 * closest to the limit starting from one of the users provided.
+	 * closest to the limit starting from the users provided.
 	 * 
 	 * @param users
 	 *            list of users to check for possible total infections from
 	 * @param limit
 	 *            cap to number of users to infect
+	 * @param strategy
+	 *            how to choose the total infections to deploy to
 	 * @return The list of users to ultimately deploy the feature to for
 	 *         limited_infection
 	 */
-	private List<User> limitedInfectionRoute(List<User> users, int limit) {
-		// creates map of all possible total infections
-		Map<User, List<User>> possibleInfections = new HashMap<User, List<User>>();
-		for (User u : users) {
-			List<User> infectionRoute = getConnectedUsers(u);
-			possibleInfections.put(u, infectionRoute);
+	private List<User> limitedInfectionRoute(List<User> users, int limit, LimitedInfectionStrategy strategy) {
+		ComponentIndex index = componentsFor(users);
+		BitSet chosen = ComponentChoice.choose(index, index.componentsOf(users), limit, strategy);
+		List<User> route = new ArrayList<User>();
+		for (int c = chosen.nextSetBit(0); c >= 0; c = chosen.nextSetBit(c + 1)) {
+			route.addAll(index.members(c));
 		}
-		// finds path with length closest to limit
-		List<User> closestPath = new ArrayList<User>();
-		for (User u : possibleInfections.keySet()) {
-			List<User> infectionPath = possibleInfections.get(u);
-			int infectionSize = infectionPath.size();
-			if (infectionSize <= limit && infectionSize > closestPath.size())
-				closestPath = infectionPath;
+		return route;
+	}
+
+	/**
+	 * @return the controller's component index, or when walking User objects,
+	 *         a labelling of the graph around the given users made for this call
+	 */
+	private ComponentIndex componentsFor(List<User> users) {
+		if (graph != null || components != null)
+			return getComponents();
+		return ConnectedComponents.of(UserGraph.of(users));
+	}
+
+	/**
+	 * Walks the total infection of the seeds on graph.
+	 */
+	private int[] traverse(int[] seeds) {
+		InfectionMetrics measure = metrics;
+		if (measure == null)
+			return traversal.reachableFrom(graph, seeds);
+		long start = System.nanoTime();
+		int[] infected = traversal.reachableFrom(graph, seeds);
+		long nanos = System.nanoTime() - start;
+		long edges = 0;
+		for (int v : infected) {
+			edges += graph.degree(v);
 		}
-		return closestPath;
+		measure.recordTraversal(nanos, infected.length, edges);
+		return infected;
+	}
 
+	private ComponentIndex getComponents() {
+		if (components == null) {
+			components = ConnectedComponents.of(graph);
+		}
+		return components;
 	}
 
-	// make private
-	private List<User> getConnectedUsers(User user) {
-		List<User> connectedUsers = new LinkedList<User>();
+	/**
+	 * Finds all users connected to the given user by walking the User objects.
+	 * Package-private so the benchmarks can measure it directly.
+	 * 
+	 * @param user
+	 *            starting point of the search
+	 */
+	List<User> getConnectedUsers(User user) {
+		return getConnectedUsers(Collections.singletonList(user));
+	}
+
+	/**
+	 * Finds all users connected to at least one of the given users with a
+	 * single breadth first search seeded with all of them.
+	 * 
+	 * @param users
+	 *            starting points of the search
+	 */
+	private List<User> getConnectedUsers(List<User> users) {
+		long start = metrics != null ? System.nanoTime() : 0;
+		long edges = 0;
+		List<User> connectedUsers = new ArrayList<User>();
 		Set<User> visited = new HashSet<User>();
-		User rootNode = user;
-		Queue<User> toVisit = new LinkedList<User>();
-		toVisit.add(rootNode);
-		connectedUsers.add(rootNode);
-		while (!toVisit.isEmpty()) {
-			User currentNode = toVisit.remove();
-			visited.add(currentNode);
-			List<User> childNodes = getUnvisitedAdjacent(visited, currentNode);
-			for (User u : childNodes) {
-				visited.add(u);
-				connectedUsers.add(u);
-				toVisit.add(u);
+		for (User rootNode : users) {
+			if (visited.add(rootNode))
+				connectedUsers.add(rootNode);
+		}
+		// connectedUsers doubles as the queue: users past head are still to be
+		// visited
+		for (int head = 0; head < connectedUsers.size(); head++) {
+			List<User> related = connectedUsers.get(head).getRelatedUsers();
+			edges += related.size();
+			for (User u : related) {
+				if (visited.add(u))
+					connectedUsers.add(u);
 			}
 		}
-
+		if (metrics != null)
+			metrics.recordTraversal(System.nanoTime() - start, connectedUsers.size(), edges);
 		return connectedUsers;
+	}
+
+	/**
+	 * Yields the members of the given components, listing the members of a
+	 * component only once the previous one has been consumed, for
+	 * {@link #streamTotalInfection} on a component index.
+	 */
+	private static final class ComponentMemberIterator implements Iterator<User> {
+		private final ComponentIndex index;
+		private final BitSet remaining;
+		private Iterator<User> members = Collections.<User> emptyList().iterator();
 
+		ComponentMemberIterator(ComponentIndex index, BitSet components) {
+			this.index = index;
+			this.remaining = components;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!members.hasNext()) {
+				int c = remaining.nextSetBit(0);
+				if (c < 0)
+					return false;
+				remaining.clear(c);
+				members = index.members(c).iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public User next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return members.next();
+		}
 	}
 
 	/**
-	 * Finds all unvisited adjacent/related users from a given user and a set of
-	 * already visited users.
-	 * 
-	 * @param visited
-	 * @param user
+	 * Breadth first search over the User objects that yields users as it
+	 * discovers them, for {@link #streamTotalInfection} without a graph.
 	 */
-	private List<User> getUnvisitedAdjacent(Set<User> visited, User user) {
-		List<User> unvisitedAdjacentUsers = new LinkedList<User>();
-		for (User u : user.getRelatedUsers()) {
-			if (!visited.contains(u))
-				unvisitedAdjacentUsers.add(u);
+	private static final class ConnectedUserIterator implements Iterator<User> {
+		private final Set<User> visited = new HashSet<User>();
+		private final ArrayDeque<User> queue = new ArrayDeque<User>();
+
+		ConnectedUserIterator(List<User> users) {
+			for (User rootNode : users) {
+				if (visited.add(rootNode))
+					queue.add(rootNode);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		@Override
+		public User next() {
+			User user = queue.remove();
+			List<User> related = user.getRelatedUsers();
+			if (related != null) {
+				for (User u : related) {
+					if (visited.add(u))
+						queue.add(u);
+				}
+			}
+			return user;
 		}
-		return unvisitedAdjacentUsers;
 	}
 
 	private void deployFeatureToUsers(KhanSiteFeature feature, List<User> users) {
+		if (assignments != null || pipeline != null) {
+			int[] indices = new int[users.size()];
+			int i = 0;
+			for (User u : users) {
+				indices[i++] = graph != null ? graph.indexOf(u) : components.indexOf(u);
+			}
+			deployFeatureToIndices(feature, indices);
+			return;
+		}
+		checkCanonicalUsers();
+		if (journal != null)
+			journal(feature, graph.indicesOf(users));
 		for (User u : users) {
 			u.setCurrentFeature(feature);
 		}
 	}
+
+	private void checkCanonicalUsers() {
+		if (graph != null && !graph.hasCanonicalUsers()) {
+			throw new IllegalStateException(
+					"The graph resolves a new User on every lookup; deploy to assignments or a pipeline");
+		}
+	}
+
+	private void journal(KhanSiteFeature feature, int[] users) {
+		int releaseId = releaseIdOf(feature);
+		try {
+			lastRolloutId = journal.newRolloutId();
+			journal.append(lastRolloutId, releaseId, users, new IntUnaryOperator() {
+				@Override
+				public int applyAsInt(int user) {
+					return releaseIdOf(graph.userAt(user).getCurrentFeature());
+				}
+			});
+			journal.sync();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private int releaseIdOf(KhanSiteFeature feature) {
+		if (feature == null)
+			return DeploymentJournal.NO_FEATURE;
+		int id = registry.releaseId(feature);
+		if (id < 0) {
+			throw new IllegalArgumentException(
+					"Feature is not registered: " + feature.getName() + " " + feature.getCurrentVersion());
+		}
+		return id;
+	}
+
+	private void deployFeatureToIndices(KhanSiteFeature feature, int[] indices) {
+		if (assignments != null) {
+			// a pipeline may be writing to the same store from its threads
+			synchronized (assignments) {
+				assignments.assign(feature, indices);
+			}
+		}
+		if (pipeline != null)
+			lastDeployment = pipeline.deploy(feature, indices);
+	}
 }
@@ -0,0 +1,75 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.khan.interview.chris.limitedInfection.graph.GraphVersion;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * InfectionResult is the immutable answer of an {@link InfectionService}
+ * query: the users an infection would reach, as dense indices into the graph
+ * version the query ran against.
+ *
+ * @author Christopher Chen
+ */
+public final class InfectionResult {
+
+	private final GraphVersion version;
+	private final int[] users;
+	private final long brokenEdges;
+
+	InfectionResult(GraphVersion version, int[] users) {
+		this(version, users, 0);
+	}
+
+	InfectionResult(GraphVersion version, int[] users, long brokenEdges) {
+		this.version = version;
+		this.users = users;
+		this.brokenEdges = brokenEdges;
+	}
+
+	/**
+	 * @return the graph version the query ran against
+	 */
+	public GraphVersion getGraphVersion() {
+		return version;
+	}
+
+	/**
+	 * @return number of users infected
+	 */
+	public int size() {
+		return users.length;
+	}
+
+	/**
+	 * @return dense indices of the infected users in
+	 *         {@link #getGraphVersion()}
+	 */
+	public int[] indices() {
+		return Arrays.copyOf(users, users.length);
+	}
+
+	/**
+	 * @return the infected users
+	 */
+	public List<User> users() {
+		return version.graph().toUsers(users);
+	}
+
+	/**
+	 * @return number of relations between an infected and an uninfected user,
+	 *         only ever non-zero for
+	 *         {@link LimitedInfectionStrategy#PARTIAL}
+	 */
+	public long brokenEdges() {
+		return brokenEdges;
+	}
+
+	@Override
+	public String toString() {
+		return "InfectionResult [version=" + version.version() + ", size=" + users.length + ", brokenEdges="
+				+ brokenEdges + "]";
+	}
+}
@@ -0,0 +1,236 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import com.khan.interview.chris.limitedInfection.deploy.Deployment;
+import com.khan.interview.chris.limitedInfection.deploy.DeploymentPipeline;
+import com.khan.interview.chris.limitedInfection.graph.ComponentCache;
+import com.khan.interview.chris.limitedInfection.graph.ConnectedComponents;
+import com.khan.interview.chris.limitedInfection.graph.GraphVersion;
+import com.khan.interview.chris.limitedInfection.graph.IndexedGraph;
+import com.khan.interview.chris.limitedInfection.graph.PartialInfection;
+import com.khan.interview.chris.limitedInfection.graph.UserGraph;
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * InfectionService answers infection queries from many threads at once. Unlike
+ * {@link InfectionController} it never deploys as a side effect of a query and
+ * never touches the Users' relations after publishing: every query reads an
+ * immutable {@link GraphVersion}, and results are deployed separately through
+ * a {@link DeploymentPipeline}.
+ * <p>
+ * A new graph is published by building a new version off to the side and
+ * swapping it in atomically. Queries already running finish on the version
+ * they started with, and every {@link InfectionResult} records its version.
+ * </p>
+ * <p>
+ * Dense indices, and so feature assignments keyed by them, stay the same
+ * across versions as long as every version is published from the same user
+ * list with new users appended at the end.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class InfectionService {
+
+	private final AtomicReference<GraphVersion> current = new AtomicReference<GraphVersion>();
+	private final Executor executor;
+	private volatile DeploymentPipeline pipeline;
+	private volatile ComponentCache<int[]> cache;
+
+	/**
+	 * Creates a service running asynchronous queries on the common fork-join
+	 * pool.
+	 */
+	public InfectionService() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param executor
+	 *            runs asynchronous queries, e.g. a thread-per-request executor
+	 */
+	public InfectionService(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @param pipeline
+	 *            the pipeline results are deployed through
+	 */
+	public void setPipeline(DeploymentPipeline pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * Answers total infections from a cache of component members, keyed by
+	 * graph version. Entries of older versions are dropped on every publish.
+	 *
+	 * @param cache
+	 *            the cache to use, or null for none
+	 */
+	public void setCache(ComponentCache<int[]> cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Builds a new version of the graph from the given users and makes it the
+	 * one queries run against. The users' relations must not change while the
+	 * version is being built.
+	 *
+	 * @param users
+	 *            the users making up the graph
+	 * @return the published version
+	 */
+	public GraphVersion publish(List<User> users) {
+		return publish(UserGraph.of(users));
+	}
+
+	/**
+	 * Makes a new version of the given graph the one queries run against. The
+	 * components are labelled before the swap, so queries never wait on it;
+	 * only concurrent publishers wait for each other.
+	 *
+	 * @param graph
+	 *            the graph to publish
+	 * @return the published version
+	 */
+	public synchronized GraphVersion publish(IndexedGraph graph) {
+		GraphVersion previous = current.get();
+		GraphVersion next = GraphVersion.of(previous == null ? 1 : previous.version() + 1, graph);
+		current.set(next);
+		ComponentCache<int[]> members = cache;
+		if (members != null)
+			members.retainVersion(next.version());
+		return next;
+	}
+
+	/**
+	 * @return the version queries currently run against
+	 * @throws IllegalStateException
+	 *             if no graph has been published
+	 */
+	public GraphVersion current() {
+		GraphVersion version = current.get();
+		if (version == null) {
+			throw new IllegalStateException("No graph has been published");
+		}
+		return version;
+	}
+
+	/**
+	 * Finds every user connected to at least one of the given users.
+	 *
+	 * @param users
+	 *            starting points of the infection
+	 * @throws IllegalArgumentException
+	 *             if one of the users is not part of the current version
+	 */
+	public InfectionResult totalInfection(List<User> users) {
+		final GraphVersion version = current();
+		BitSet infected = version.components().componentsOf(users);
+		ComponentCache<int[]> members = cache;
+		if (members == null)
+			return new InfectionResult(version, version.membersOf(infected));
+
+		int[][] parts = new int[infected.cardinality()][];
+		int total = 0;
+		int i = 0;
+		for (int c = infected.nextSetBit(0); c >= 0; c = infected.nextSetBit(c + 1)) {
+			parts[i] = members.get(version.version(), c, new ComponentCache.Loader<int[]>() {
+				@Override
+				public int[] load(int component) {
+					return version.components().memberIndices(component);
+				}
+			});
+			total += parts[i++].length;
+		}
+		if (parts.length == 1)
+			return new InfectionResult(version, parts[0]);
+		int[] infectedUsers = new int[total];
+		int at = 0;
+		for (int[] part : parts) {
+			System.arraycopy(part, 0, infectedUsers, at, part.length);
+			at += part.length;
+		}
+		return new InfectionResult(version, infectedUsers);
+	}
+
+	/**
+	 * Finds the total infections, starting from the given users, to deploy to
+	 * under the limit.
+	 *
+	 * @param users
+	 *            list of users to check for possible total infections from
+	 * @param limit
+	 *            cap to number of users to infect
+	 * @param strategy
+	 *            how to choose the total infections
+	 * @return the users to infect, empty if no infection fits under the limit
+	 * @throws IllegalArgumentException
+	 *             if one of the users is not part of the current version
+	 */
+	public InfectionResult limitedInfection(List<User> users, int limit, LimitedInfectionStrategy strategy) {
+		GraphVersion version = current();
+		if (strategy == LimitedInfectionStrategy.PARTIAL) {
+			IndexedGraph graph = version.graph();
+			PartialInfection infection = PartialInfection.grow(graph, limit, graph.indicesOf(users));
+			return new InfectionResult(version, infection.members(), infection.brokenEdges());
+		}
+		ConnectedComponents components = version.components();
+		BitSet chosen = ComponentChoice.choose(components, components.componentsOf(users), limit, strategy);
+		return new InfectionResult(version, version.membersOf(chosen));
+	}
+
+	/**
+	 * Runs {@link #totalInfection(List)} on the service's executor.
+	 */
+	public CompletableFuture<InfectionResult> submitTotalInfection(final List<User> users) {
+		return CompletableFuture.supplyAsync(new Supplier<InfectionResult>() {
+			@Override
+			public InfectionResult get() {
+				return totalInfection(users);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Runs {@link #limitedInfection(List, int, LimitedInfectionStrategy)} on
+	 * the service's executor.
+	 */
+	public CompletableFuture<InfectionResult> submitLimitedInfection(final List<User> users, final int limit,
+			final LimitedInfectionStrategy strategy) {
+		return CompletableFuture.supplyAsync(new Supplier<InfectionResult>() {
+			@Override
+			public InfectionResult get() {
+				return limitedInfection(users, limit, strategy);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Deploys the feature to the users of a result through the pipeline.
+	 *
+	 * @param result
+	 *            the users to deploy to
+	 * @param feature
+	 *            the feature to deploy
+	 * @return the running deployment
+	 * @throws IllegalStateException
+	 *             if no pipeline has been set
+	 */
+	public Deployment deploy(InfectionResult result, KhanSiteFeature feature) {
+		DeploymentPipeline deployTo = pipeline;
+		if (deployTo == null) {
+			throw new IllegalStateException("No deployment pipeline has been set");
+		}
+		return deployTo.deploy(feature, result.indices());
+	}
+}
@@ -0,0 +1,43 @@
+package com.khan.interview.chris.limitedInfection;
+
+/**
+ * The ways {@link InfectionController#limited_infection} can choose which
+ * users to infect. Every strategy but {@link #PARTIAL} only infects whole
+ * total infections (connected components), so coaches and students stay
+ * consistent.
+ *
+ * @author Christopher Chen
+ */
+public enum LimitedInfectionStrategy {
+
+	/**
+	 * Infect the one total infection closest to, but under, the limit.
+	 */
+	SINGLE_COMPONENT,
+
+	/**
+	 * Infect the combination of disjoint total infections whose combined size
+	 * is closest to, but under, the limit.
+	 */
+	SUBSET_SUM,
+
+	/**
+	 * Grow the infection from the users with a breadth first search and stop
+	 * at the limit, keeping coaches together with the students only they
+	 * coach but otherwise splitting total infections (see
+	 * {@link com.khan.interview.chris.limitedInfection.graph.PartialInfection}).
+	 * Never fails for a positive limit, at the price of inconsistent
+	 * relations.
+	 */
+	PARTIAL,
+
+	/**
+	 * Infect the combination of rollout cohorts, containing the users, whose
+	 * combined size is closest to, but under, the limit. Cohorts split even
+	 * the largest total infection into near equal parts cutting few relations
+	 * (see
+	 * {@link com.khan.interview.chris.limitedInfection.graph.CohortPartitioner})
+	 * and have to be set on the controller first.
+	 */
+	COHORTS
+}
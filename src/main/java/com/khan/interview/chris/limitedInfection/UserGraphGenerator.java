@@ -0,0 +1,58 @@
+package com.khan.interview.chris.limitedInfection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.khan.interview.chris.limitedInfection.model.RelationLoader;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * Generates synthetic user graphs for load testing without going through
+ * GraphStream. Relations are drawn as random pairs of user positions and
+ * handed to {@link RelationLoader} in one batch, so graphs of millions of users
+ * are built in seconds.
+ *
+ * @author Christopher Chen
+ *
+ */
+public final class UserGraphGenerator {
+
+	private UserGraphGenerator() {
+		// static helpers only
+	}
+
+	/**
+	 * Generates users related uniformly at random, in the same shape as
+	 * {@link GraphViewer#generateRandomUserGraph(int)} (user ids are the
+	 * position, usernames "n-" followed by the id).
+	 *
+	 * @param numberUsers
+	 *            - the number of users desired in the graph
+	 * @param averageDegree
+	 *            - the average number of relations per user
+	 * @param seed
+	 *            - random seed, the same seed gives the same graph
+	 * @return
+	 */
+	public static List<User> generateRandomUsers(int numberUsers, int averageDegree, long seed) {
+		List<User> users = new ArrayList<User>(numberUsers);
+		for (int i = 0; i < numberUsers; i++) {
+			String id = String.valueOf(i);
+			users.add(new User(id, "n-" + id, new ArrayList<User>(), null));
+		}
+		if (numberUsers < 2) {
+			return users;
+		}
+		Random random = new Random(seed);
+		int relations = (int) Math.min(Integer.MAX_VALUE - 8, (long) numberUsers * averageDegree / 2);
+		int[] from = new int[relations];
+		int[] to = new int[relations];
+		for (int i = 0; i < relations; i++) {
+			from[i] = random.nextInt(numberUsers);
+			to[i] = random.nextInt(numberUsers);
+		}
+		RelationLoader.load(users, from, to);
+		return users;
+	}
+}
@@ -0,0 +1,27 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import java.io.IOException;
+
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+/**
+ * An AssignmentSink persists batches of feature assignments for a
+ * {@link DeploymentPipeline}. Batches of the same deployment may be written
+ * from several threads at once, so implementations must be thread safe.
+ *
+ * @author Christopher Chen
+ */
+public interface AssignmentSink {
+
+	/**
+	 * @param feature
+	 *            the feature being deployed
+	 * @param users
+	 *            dense indices of the users in the batch; the sink may keep
+	 *            the array
+	 * @throws IOException
+	 *             if the batch couldn't be persisted, which fails the
+	 *             deployment
+	 */
+	void write(KhanSiteFeature feature, int[] users) throws IOException;
+}
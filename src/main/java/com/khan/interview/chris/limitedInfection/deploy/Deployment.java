@@ -0,0 +1,71 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+/**
+ * A Deployment tracks one feature rollout running through a
+ * {@link DeploymentPipeline}: how many assignments have been written so far,
+ * and a future completed once all of them are, or once the sink fails.
+ *
+ * @author Christopher Chen
+ */
+public final class Deployment {
+
+	private final KhanSiteFeature feature;
+	private final long total;
+	private final AtomicLong written = new AtomicLong();
+	private final CompletableFuture<Deployment> completion = new CompletableFuture<Deployment>();
+
+	Deployment(KhanSiteFeature feature, long total) {
+		this.feature = feature;
+		this.total = total;
+	}
+
+	/**
+	 * @return the feature being deployed
+	 */
+	public KhanSiteFeature getFeature() {
+		return feature;
+	}
+
+	/**
+	 * @return number of users the feature is deployed to
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return number of assignments the sink has written so far
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * @return whether the deployment completed, successfully or not
+	 */
+	public boolean isDone() {
+		return completion.isDone();
+	}
+
+	/**
+	 * @return completed with this deployment once every assignment is
+	 *         written, or exceptionally with the sink's failure
+	 */
+	public CompletableFuture<Deployment> future() {
+		return completion;
+	}
+
+	long addWritten(int count) {
+		return written.addAndGet(count);
+	}
+
+	@Override
+	public String toString() {
+		return "Deployment [feature=" + feature.getName() + ", written=" + written.get() + ", total=" + total + "]";
+	}
+}
@@ -0,0 +1,474 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * DeploymentJournal is an append-only log of feature assignments, so a
+ * rollout can be replayed after a crash or rolled back without traversing the
+ * graph again. Features and users are addressed by int ids, e.g. release ids
+ * of a {@link com.khan.interview.chris.limitedInfection.model.FeatureRegistry},
+ * so a version bump can be rolled back, and dense user indices.
+ * <p>
+ * Every batch records the rollout it belongs to, the feature assigned, the
+ * feature its users had before, and the users, either as runs of consecutive
+ * indices or as a bitmap, whichever is smaller. A rollback appends the inverse
+ * batches (previous feature and assigned feature swapped) newest first, so
+ * replaying the journal always ends in the current state. Rolling back
+ * restores the previous feature of every user of the rollout, including users
+ * a later rollout has touched since; roll back the newest rollout first.
+ * </p>
+ * <p>
+ * The file is little-endian and mapped into memory, growing by doubling, up
+ * to the 2 GB a single buffer can map. After a 16 byte header (magic,
+ * version) every batch is written as its length, a CRC32 of its body and the
+ * body. Replay stops at the first torn or corrupt batch. Appends are made
+ * durable by {@link #sync()}, which commits every batch appended so far with
+ * one flush, so threads syncing concurrently share a single flush (group
+ * commit). Thread safe.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class DeploymentJournal implements Closeable {
+
+	/**
+	 * Feature id of users without a feature.
+	 */
+	public static final int NO_FEATURE = -1;
+
+	static final long MAGIC = 0x4A524E4C53464E49L;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+
+	private static final int INITIAL_CAPACITY = 1 << 20;
+	private static final byte ASSIGN = 1;
+	private static final byte ROLLBACK = 2;
+	private static final byte RUNS = 0;
+	private static final byte BITMAP = 1;
+	// type, rollout, feature, previous feature, encoding
+	private static final int BATCH_HEADER = 1 + 8 + 4 + 4 + 1;
+
+	/**
+	 * One batch of assignments read back from the journal.
+	 */
+	public static final class Batch {
+		private final long rolloutId;
+		private final boolean rollback;
+		private final int featureId;
+		private final int previousFeatureId;
+		private final BitSet users;
+
+		Batch(long rolloutId, boolean rollback, int featureId, int previousFeatureId, BitSet users) {
+			this.rolloutId = rolloutId;
+			this.rollback = rollback;
+			this.featureId = featureId;
+			this.previousFeatureId = previousFeatureId;
+			this.users = users;
+		}
+
+		public long getRolloutId() {
+			return rolloutId;
+		}
+
+		/**
+		 * @return true if the batch undoes part of its rollout
+		 */
+		public boolean isRollback() {
+			return rollback;
+		}
+
+		/**
+		 * @return the feature assigned, or {@link #NO_FEATURE}
+		 */
+		public int getFeatureId() {
+			return featureId;
+		}
+
+		/**
+		 * @return the feature the users had before, or {@link #NO_FEATURE}
+		 */
+		public int getPreviousFeatureId() {
+			return previousFeatureId;
+		}
+
+		/**
+		 * @return dense indices of the users, not to be modified
+		 */
+		public BitSet getUsers() {
+			return users;
+		}
+
+		@Override
+		public String toString() {
+			return "Batch [rolloutId=" + rolloutId + ", rollback=" + rollback + ", featureId=" + featureId
+					+ ", previousFeatureId=" + previousFeatureId + ", users=" + users.cardinality() + "]";
+		}
+	}
+
+	/**
+	 * Receives the batches of a journal in the order they were appended.
+	 */
+	public interface BatchListener {
+
+		/**
+		 * @param batch
+		 *            the next batch
+		 */
+		void batch(Batch batch);
+	}
+
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+	// end of the last batch appended
+	private int end;
+	private long nextRolloutId;
+	private final Object syncLock = new Object();
+	// end of the last batch flushed, guarded by syncLock
+	private int durable;
+
+	private DeploymentJournal(FileChannel channel) throws IOException {
+		this.channel = channel;
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Journal is larger than 2 GB");
+		}
+		map((int) Math.max(size, INITIAL_CAPACITY));
+		if (size == 0) {
+			buffer.putLong(0, MAGIC);
+			buffer.putInt(8, VERSION);
+			end = HEADER_SIZE;
+			return;
+		}
+		if (size < HEADER_SIZE || buffer.getLong(0) != MAGIC)
+			throw new IOException("Not a deployment journal");
+		int version = buffer.getInt(8);
+		if (version != VERSION)
+			throw new IOException("Unsupported deployment journal version " + version);
+		end = HEADER_SIZE;
+		final long[] lastRollout = { -1 };
+		end = scan(new BatchListener() {
+			@Override
+			public void batch(Batch batch) {
+				lastRollout[0] = Math.max(lastRollout[0], batch.getRolloutId());
+			}
+		});
+		nextRolloutId = lastRollout[0] + 1;
+		durable = end;
+	}
+
+	/**
+	 * Opens the journal, creating it if needed. An existing journal is scanned
+	 * up to its last complete batch, and new batches are appended after it.
+	 *
+	 * @param path
+	 *            file of the journal
+	 * @return the open journal
+	 * @throws IOException
+	 *             if the file can't be opened or isn't a journal
+	 */
+	public static DeploymentJournal open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			return new DeploymentJournal(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return a rollout id not used by any batch in the journal yet
+	 */
+	public synchronized long newRolloutId() {
+		return nextRolloutId++;
+	}
+
+	/**
+	 * Appends the assignment of a feature to users who all had the same
+	 * feature before.
+	 *
+	 * @param rolloutId
+	 *            rollout the batch belongs to
+	 * @param featureId
+	 *            the feature assigned, or {@link #NO_FEATURE}
+	 * @param previousFeatureId
+	 *            the feature the users had before, or {@link #NO_FEATURE}
+	 * @param users
+	 *            dense indices of the users
+	 * @throws IOException
+	 *             if the journal is full
+	 */
+	public void append(long rolloutId, int featureId, int previousFeatureId, BitSet users) throws IOException {
+		append(ASSIGN, rolloutId, featureId, previousFeatureId, users);
+	}
+
+	/**
+	 * Appends the assignment of a feature to users, one batch per feature they
+	 * had before.
+	 *
+	 * @param rolloutId
+	 *            rollout the batches belong to
+	 * @param featureId
+	 *            the feature assigned, or {@link #NO_FEATURE}
+	 * @param users
+	 *            dense indices of the users
+	 * @param previousOf
+	 *            the feature id every user had before, or {@link #NO_FEATURE}
+	 * @throws IOException
+	 *             if the journal is full
+	 */
+	public void append(long rolloutId, int featureId, int[] users, IntUnaryOperator previousOf)
+			throws IOException {
+		// grouped by previous feature id + 1
+		BitSet[] byPrevious = new BitSet[4];
+		for (int u : users) {
+			int group = previousOf.applyAsInt(u) + 1;
+			if (group < 0) {
+				throw new IllegalArgumentException("Not a feature id: " + (group - 1));
+			}
+			if (group >= byPrevious.length)
+				byPrevious = Arrays.copyOf(byPrevious, Math.max(group + 1, byPrevious.length * 2));
+			if (byPrevious[group] == null)
+				byPrevious[group] = new BitSet();
+			byPrevious[group].set(u);
+		}
+		for (int group = 0; group < byPrevious.length; group++) {
+			if (byPrevious[group] != null)
+				append(ASSIGN, rolloutId, featureId, group - 1, byPrevious[group]);
+		}
+	}
+
+	/**
+	 * Makes every batch appended so far durable. If another thread is already
+	 * flushing, waits for it and only flushes again if that didn't cover the
+	 * batches appended before this call.
+	 *
+	 * @throws IOException
+	 *             if flushing fails
+	 */
+	public void sync() throws IOException {
+		int target;
+		synchronized (this) {
+			target = end;
+		}
+		synchronized (syncLock) {
+			if (durable >= target)
+				return;
+			MappedByteBuffer flushing;
+			int flushedTo;
+			synchronized (this) {
+				flushing = buffer;
+				flushedTo = end;
+			}
+			flushing.force();
+			durable = flushedTo;
+		}
+	}
+
+	/**
+	 * Reads every batch back, in the order they were appended.
+	 *
+	 * @param listener
+	 *            receives the batches
+	 */
+	public synchronized void replay(BatchListener listener) {
+		scan(listener);
+	}
+
+	/**
+	 * Replays the journal into the feature of every user.
+	 *
+	 * @param users
+	 *            number of users
+	 * @return the feature id of every user after the last batch, or
+	 *         {@link #NO_FEATURE}
+	 */
+	public int[] replayState(int users) {
+		final int[] featureOf = new int[users];
+		Arrays.fill(featureOf, NO_FEATURE);
+		replay(new BatchListener() {
+			@Override
+			public void batch(Batch batch) {
+				BitSet batchUsers = batch.getUsers();
+				for (int u = batchUsers.nextSetBit(0); u >= 0 && u < featureOf.length; u = batchUsers
+						.nextSetBit(u + 1)) {
+					featureOf[u] = batch.getFeatureId();
+				}
+			}
+		});
+		return featureOf;
+	}
+
+	/**
+	 * Rolls a rollout back: appends and syncs the inverse of its batches,
+	 * newest first, and returns them for the caller to apply.
+	 *
+	 * @param rolloutId
+	 *            the rollout to undo
+	 * @return the inverse batches, in the order to apply them
+	 * @throws IllegalStateException
+	 *             if the rollout has already been rolled back
+	 * @throws IOException
+	 *             if the journal is full or can't be flushed
+	 */
+	public List<Batch> rollback(final long rolloutId) throws IOException {
+		final List<Batch> inverse = new ArrayList<Batch>();
+		synchronized (this) {
+			final boolean[] rolledBack = { false };
+			scan(new BatchListener() {
+				@Override
+				public void batch(Batch batch) {
+					if (batch.getRolloutId() != rolloutId)
+						return;
+					if (batch.isRollback())
+						rolledBack[0] = true;
+					else
+						inverse.add(new Batch(rolloutId, true, batch.getPreviousFeatureId(), batch.getFeatureId(),
+								batch.getUsers()));
+				}
+			});
+			if (rolledBack[0]) {
+				throw new IllegalStateException("Rollout " + rolloutId + " has already been rolled back");
+			}
+			Collections.reverse(inverse);
+			for (Batch batch : inverse) {
+				append(ROLLBACK, rolloutId, batch.getFeatureId(), batch.getPreviousFeatureId(), batch.getUsers());
+			}
+		}
+		sync();
+		return inverse;
+	}
+
+	/**
+	 * @return number of bytes used by the journal, header included
+	 */
+	public synchronized long length() {
+		return end;
+	}
+
+	/**
+	 * Flushes and closes the journal.
+	 */
+	@Override
+	public void close() throws IOException {
+		sync();
+		channel.close();
+	}
+
+	private synchronized void append(byte type, long rolloutId, int featureId, int previousFeatureId, BitSet users)
+			throws IOException {
+		int runs = 0;
+		for (int u = users.nextSetBit(0); u >= 0; u = users.nextSetBit(users.nextClearBit(u))) {
+			runs++;
+		}
+		int firstWord = users.isEmpty() ? 0 : users.nextSetBit(0) >>> 6;
+		int words = users.isEmpty() ? 0 : ((users.length() - 1) >>> 6) - firstWord + 1;
+		long runsSize = 4 + 8L * runs;
+		long bitmapSize = 8 + 8L * words;
+		long bodySize = BATCH_HEADER + Math.min(runsSize, bitmapSize);
+		// room for the length, checksum and the next batch's length
+		ensureCapacity(end + 8 + bodySize + 4);
+
+		ByteBuffer body = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		body.position(end + 8);
+		body.put(type).putLong(rolloutId).putInt(featureId).putInt(previousFeatureId);
+		if (runsSize <= bitmapSize) {
+			body.put(RUNS).putInt(runs);
+			for (int u = users.nextSetBit(0); u >= 0;) {
+				int runEnd = users.nextClearBit(u);
+				body.putInt(u).putInt(runEnd - u);
+				u = users.nextSetBit(runEnd);
+			}
+		} else {
+			body.put(BITMAP).putInt(firstWord).putInt(words);
+			long[] bits = users.toLongArray();
+			for (int w = firstWord; w < firstWord + words; w++) {
+				body.putLong(bits[w]);
+			}
+		}
+		int bodyEnd = body.position();
+		CRC32 crc = new CRC32();
+		ByteBuffer checked = buffer.duplicate();
+		checked.position(end + 8);
+		checked.limit(bodyEnd);
+		crc.update(checked);
+		buffer.putInt(end, bodyEnd - end - 8);
+		buffer.putInt(end + 4, (int) crc.getValue());
+		// a zero length marks the end, whatever an earlier, torn batch left
+		buffer.putInt(bodyEnd, 0);
+		end = bodyEnd;
+		nextRolloutId = Math.max(nextRolloutId, rolloutId + 1);
+	}
+
+	private int scan(BatchListener listener) {
+		ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int at = HEADER_SIZE;
+		int limit = in.capacity();
+		while (at + 8 <= limit) {
+			int length = in.getInt(at);
+			if (length < BATCH_HEADER || (long) at + 8 + length > limit)
+				break;
+			CRC32 crc = new CRC32();
+			ByteBuffer checked = buffer.duplicate();
+			checked.position(at + 8);
+			checked.limit(at + 8 + length);
+			crc.update(checked);
+			if ((int) crc.getValue() != in.getInt(at + 4))
+				break;
+			in.position(at + 8);
+			byte type = in.get();
+			long rolloutId = in.getLong();
+			int featureId = in.getInt();
+			int previousFeatureId = in.getInt();
+			BitSet users;
+			if (in.get() == RUNS) {
+				users = new BitSet();
+				for (int runs = in.getInt(); runs > 0; runs--) {
+					int from = in.getInt();
+					users.set(from, from + in.getInt());
+				}
+			} else {
+				int firstWord = in.getInt();
+				long[] bits = new long[firstWord + in.getInt()];
+				for (int w = firstWord; w < bits.length; w++) {
+					bits[w] = in.getLong();
+				}
+				users = BitSet.valueOf(bits);
+			}
+			listener.batch(new Batch(rolloutId, type == ROLLBACK, featureId, previousFeatureId, users));
+			at += 8 + length;
+		}
+		return at;
+	}
+
+	private void ensureCapacity(long needed) throws IOException {
+		if (needed <= buffer.capacity())
+			return;
+		if (needed > Integer.MAX_VALUE) {
+			throw new IOException("Journal is full");
+		}
+		// flush what the old mapping holds before replacing it
+		buffer.force();
+		map((int) Math.min(Integer.MAX_VALUE, Math.max(needed, 2L * buffer.capacity())));
+	}
+
+	private void map(int capacity) throws IOException {
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
@@ -0,0 +1,274 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.khan.interview.chris.limitedInfection.metrics.InfectionMetrics;
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+/**
+ * DeploymentPipeline persists computed infections through an
+ * {@link AssignmentSink} in the background, so the planner isn't blocked by
+ * the store and the store sees batches rather than one row per user.
+ * <p>
+ * A deployment is cut into batches of {@link #getBatchSize()} users. At most
+ * {@link #getMaxInFlight()} batches of a deployment are handed to the sink at
+ * once: that many lanes run on the executor, each writing its next batch only
+ * once the previous one is persisted. Batches are sliced off lazily, so a slow
+ * sink holds back the deployment instead of letting batches pile up in memory.
+ * </p>
+ * <p>
+ * The default executor queues at most {@link #DEFAULT_QUEUE_CAPACITY} lanes
+ * waiting for a thread. Once it is full, {@link #deploy} writes the batches of
+ * the new deployment on the calling thread, so a planner producing
+ * deployments faster than the sink persists them is slowed down to its pace.
+ * An executor handed in is used as is; bounding its queue is up to the
+ * caller.
+ * </p>
+ * <p>
+ * Otherwise {@link #deploy} returns right away with a {@link Deployment}
+ * reporting progress and completion. The first failing batch fails the deployment and
+ * stops its remaining batches; batches already written are not rolled back.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class DeploymentPipeline implements Closeable {
+
+	/**
+	 * Default number of users per batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+
+	/**
+	 * Default number of batches of a deployment written at once, also the size
+	 * of the default executor.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+	/**
+	 * Number of lanes the default executor queues before deployments are
+	 * written on the calling thread.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	/**
+	 * Listener notified after every batch a deployment writes.
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * Called from the thread that wrote the batch.
+		 *
+		 * @param deployment
+		 *            the deployment that made progress
+		 */
+		void progress(Deployment deployment);
+	}
+
+	private final AssignmentSink sink;
+	private final Executor executor;
+	// the executor when the pipeline created it, shut down on close
+	private final ExecutorService owned;
+	private final int batchSize;
+	private final int maxInFlight;
+	private volatile ProgressListener listener;
+	private volatile InfectionMetrics metrics;
+
+	/**
+	 * Creates a pipeline with the default batch size, writing on its own pool
+	 * of {@link #DEFAULT_MAX_IN_FLIGHT} daemon threads with a queue of
+	 * {@link #DEFAULT_QUEUE_CAPACITY} lanes.
+	 *
+	 * @param sink
+	 *            where assignments are persisted
+	 */
+	public DeploymentPipeline(AssignmentSink sink) {
+		this(sink, new ThreadPoolExecutor(DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(DEFAULT_QUEUE_CAPACITY), new DaemonThreadFactory(),
+				new CallerRunsUnlessShutdown()), true, DEFAULT_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * @param sink
+	 *            where assignments are persisted
+	 * @param executor
+	 *            runs the writes; not shut down by {@link #close()}
+	 * @param batchSize
+	 *            number of users per batch
+	 * @param maxInFlight
+	 *            number of batches of a deployment written at once
+	 */
+	public DeploymentPipeline(AssignmentSink sink, Executor executor, int batchSize, int maxInFlight) {
+		this(sink, executor, false, batchSize, maxInFlight);
+	}
+
+	private DeploymentPipeline(AssignmentSink sink, Executor executor, boolean owned, int batchSize,
+			int maxInFlight) {
+		if (batchSize <= 0 || maxInFlight <= 0) {
+			throw new IllegalArgumentException("batchSize and maxInFlight must be positive");
+		}
+		this.sink = sink;
+		this.executor = executor;
+		this.owned = owned ? (ExecutorService) executor : null;
+		this.batchSize = batchSize;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * @param listener
+	 *            notified after every batch, or null for none
+	 */
+	public void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param metrics
+	 *            where to record how long every batch takes to write, or null
+	 *            for nowhere
+	 */
+	public void setMetrics(InfectionMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return number of users per batch
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return number of batches of a deployment written at once
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Starts persisting the feature for the given users.
+	 *
+	 * @param feature
+	 *            the feature to deploy
+	 * @param users
+	 *            dense indices of the users, which must not be modified until
+	 *            the deployment is done
+	 * @return the running deployment
+	 */
+	public Deployment deploy(KhanSiteFeature feature, int[] users) {
+		Deployment deployment = new Deployment(feature, users.length);
+		int batches = (int) ((users.length + (long) batchSize - 1) / batchSize);
+		if (batches == 0) {
+			deployment.future().complete(deployment);
+			return deployment;
+		}
+		Lane lane = new Lane(deployment, users, batches);
+		try {
+			for (int i = Math.min(maxInFlight, batches); i > 0; i--) {
+				executor.execute(lane);
+			}
+		} catch (RejectedExecutionException e) {
+			// lanes already running stop once the deployment is failed
+			deployment.future().completeExceptionally(e);
+		}
+		return deployment;
+	}
+
+	/**
+	 * Shuts down the pipeline's own executor once the running deployments are
+	 * done. An executor handed in is left alone.
+	 */
+	@Override
+	public void close() {
+		if (owned != null)
+			owned.shutdown();
+	}
+
+	/**
+	 * Writes batches of one deployment until none are left. Every lane running
+	 * for the deployment shares the batch cursor.
+	 */
+	private final class Lane implements Runnable {
+		private final Deployment deployment;
+		private final int[] users;
+		private final int batches;
+		private final AtomicInteger next = new AtomicInteger();
+
+		Lane(Deployment deployment, int[] users, int batches) {
+			this.deployment = deployment;
+			this.users = users;
+			this.batches = batches;
+		}
+
+		@Override
+		public void run() {
+			while (!deployment.isDone()) {
+				int batch = next.getAndIncrement();
+				if (batch >= batches)
+					return;
+				int from = batch * batchSize;
+				int to = (int) Math.min((long) from + batchSize, users.length);
+				InfectionMetrics measure = metrics;
+				long start = measure != null ? System.nanoTime() : 0;
+				try {
+					sink.write(deployment.getFeature(), Arrays.copyOfRange(users, from, to));
+				} catch (Throwable e) {
+					// errors too, or nobody would ever complete the deployment
+					deployment.future().completeExceptionally(e);
+					return;
+				}
+				if (measure != null)
+					measure.recordDeployBatch(System.nanoTime() - start, to - from);
+				long written = deployment.addWritten(to - from);
+				ProgressListener progress = listener;
+				if (progress != null) {
+					try {
+						progress.progress(deployment);
+					} catch (Throwable e) {
+						deployment.future().completeExceptionally(e);
+						return;
+					}
+				}
+				if (written == deployment.getTotal())
+					deployment.future().complete(deployment);
+			}
+		}
+	}
+
+	/**
+	 * Runs a lane the full executor can't take on the thread calling
+	 * {@link #deploy}, and rejects it once the executor is shut down so the
+	 * deployment is failed rather than dropped.
+	 */
+	private static final class CallerRunsUnlessShutdown implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("Deployment pipeline is closed");
+			}
+			r.run();
+		}
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "deployment-pipeline-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
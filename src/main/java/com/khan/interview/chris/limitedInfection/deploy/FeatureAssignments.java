@@ -0,0 +1,163 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+/**
+ * FeatureAssignments records which users have which features, keyed by the
+ * users' dense indices (see {@link com.khan.interview.chris.limitedInfection.graph.UserGraph}
+ * and {@link com.khan.interview.chris.limitedInfection.graph.ComponentIndex}).
+ * <p>
+ * Every feature has its own bitset, so a user can hold any number of features
+ * at once, deploying a whole infection is a bitset OR and checking a user is a
+ * single bit test. Ten million users take a little over a megabyte per
+ * feature, and none of the User objects are touched.
+ * </p>
+ * <p>
+ * Features are compared with {@link KhanSiteFeature#equals(Object)}, so a
+ * feature must not be modified while it has assignments. Not thread safe.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class FeatureAssignments {
+
+	private final Map<KhanSiteFeature, BitSet> assigned = new LinkedHashMap<KhanSiteFeature, BitSet>();
+
+	/**
+	 * Gives the feature to every user set in users.
+	 *
+	 * @param feature
+	 *            the feature to deploy
+	 * @param users
+	 *            dense indices of the users
+	 */
+	public void assign(KhanSiteFeature feature, BitSet users) {
+		bitsOf(feature).or(users);
+	}
+
+	/**
+	 * Gives the feature to every user listed.
+	 *
+	 * @param feature
+	 *            the feature to deploy
+	 * @param users
+	 *            dense indices of the users
+	 */
+	public void assign(KhanSiteFeature feature, int[] users) {
+		BitSet bits = bitsOf(feature);
+		for (int v : users) {
+			bits.set(v);
+		}
+	}
+
+	/**
+	 * Takes the feature away from every user set in users.
+	 *
+	 * @param feature
+	 *            the feature to roll back
+	 * @param users
+	 *            dense indices of the users
+	 */
+	public void clear(KhanSiteFeature feature, BitSet users) {
+		BitSet bits = assigned.get(feature);
+		if (bits != null)
+			bits.andNot(users);
+	}
+
+	/**
+	 * Takes the feature away from every user listed.
+	 *
+	 * @param feature
+	 *            the feature to roll back
+	 * @param users
+	 *            dense indices of the users
+	 */
+	public void clear(KhanSiteFeature feature, int[] users) {
+		BitSet bits = assigned.get(feature);
+		if (bits == null)
+			return;
+		for (int v : users) {
+			bits.clear(v);
+		}
+	}
+
+	/**
+	 * Takes the feature away from every user.
+	 *
+	 * @param feature
+	 *            the feature to roll back
+	 */
+	public void clearAll(KhanSiteFeature feature) {
+		assigned.remove(feature);
+	}
+
+	/**
+	 * @param user
+	 *            dense index of a user
+	 * @param feature
+	 *            the feature to check
+	 * @return whether the user has the feature
+	 */
+	public boolean has(int user, KhanSiteFeature feature) {
+		BitSet bits = assigned.get(feature);
+		return bits != null && bits.get(user);
+	}
+
+	/**
+	 * @param feature
+	 *            the feature to look up
+	 * @return a copy of the dense indices of the users with the feature
+	 */
+	public BitSet usersWith(KhanSiteFeature feature) {
+		BitSet bits = assigned.get(feature);
+		return bits == null ? new BitSet() : (BitSet) bits.clone();
+	}
+
+	/**
+	 * @param feature
+	 *            the feature to count
+	 * @return number of users with the feature
+	 */
+	public int count(KhanSiteFeature feature) {
+		BitSet bits = assigned.get(feature);
+		return bits == null ? 0 : bits.cardinality();
+	}
+
+	/**
+	 * @param user
+	 *            dense index of a user
+	 * @return every feature the user has, in the order the features were
+	 *         first assigned
+	 */
+	public List<KhanSiteFeature> featuresOf(int user) {
+		List<KhanSiteFeature> features = new ArrayList<KhanSiteFeature>();
+		for (Map.Entry<KhanSiteFeature, BitSet> entry : assigned.entrySet()) {
+			if (entry.getValue().get(user))
+				features.add(entry.getKey());
+		}
+		return features;
+	}
+
+	/**
+	 * @return every feature assigned to at least one user so far
+	 */
+	public Set<KhanSiteFeature> features() {
+		return assigned.keySet();
+	}
+
+	private BitSet bitsOf(KhanSiteFeature feature) {
+		BitSet bits = assigned.get(feature);
+		if (bits == null) {
+			bits = new BitSet();
+			assigned.put(feature, bits);
+		}
+		return bits;
+	}
+}
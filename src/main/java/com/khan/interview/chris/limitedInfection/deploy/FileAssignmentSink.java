@@ -0,0 +1,53 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+/**
+ * FileAssignmentSink is the local stand-in for a real assignment store: it
+ * appends one tab separated line per assignment (feature name, version, user
+ * index) to a file. Each batch is written and flushed as a whole, so batches
+ * written concurrently never interleave.
+ *
+ * @author Christopher Chen
+ */
+public final class FileAssignmentSink implements AssignmentSink, Closeable {
+
+	private final BufferedWriter writer;
+
+	/**
+	 * @param file
+	 *            the file to append to, created if missing
+	 */
+	public FileAssignmentSink(Path file) throws IOException {
+		this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	@Override
+	public void write(KhanSiteFeature feature, int[] users) throws IOException {
+		String prefix = feature.getName() + '\t' + feature.getCurrentVersion() + '\t';
+		synchronized (writer) {
+			for (int v : users) {
+				writer.write(prefix);
+				writer.write(Integer.toString(v));
+				writer.newLine();
+			}
+			writer.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (writer) {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+/**
+ * StoreAssignmentSink is the in-memory stand-in for a real assignment store:
+ * it writes every batch into a {@link FeatureAssignments}. Batches are written
+ * under the store's lock, so the store should only be read under it while a
+ * deployment is running.
+ *
+ * @author Christopher Chen
+ */
+public final class StoreAssignmentSink implements AssignmentSink {
+
+	private final FeatureAssignments assignments;
+
+	/**
+	 * @param assignments
+	 *            the store to write to
+	 */
+	public StoreAssignmentSink(FeatureAssignments assignments) {
+		this.assignments = assignments;
+	}
+
+	@Override
+	public void write(KhanSiteFeature feature, int[] users) {
+		synchronized (assignments) {
+			assignments.assign(feature, users);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.khan.interview.chris.limitedInfection.model.FeatureRegistry;
+
+/**
+ * UserVersions records which version every user is on, as a
+ * {@link FeatureRegistry} version id in a dense array indexed like
+ * {@link FeatureAssignments}. A byte per user is enough for the registry's
+ * {@link FeatureRegistry#MAX_VERSIONS} versions.
+ * <p>
+ * Bulk queries sweep the array once and test each user's version against a
+ * feature's bitmask, e.g. to find every user a deployment would break before
+ * it goes out. Not thread safe.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class UserVersions {
+
+	private final byte[] versions;
+
+	/**
+	 * Creates versions for the given number of users, all unknown.
+	 *
+	 * @param users
+	 *            number of users
+	 */
+	public UserVersions(int users) {
+		this.versions = new byte[users];
+		Arrays.fill(versions, (byte) FeatureRegistry.NO_VERSION);
+	}
+
+	/**
+	 * @return number of users
+	 */
+	public int size() {
+		return versions.length;
+	}
+
+	/**
+	 * @param user
+	 *            dense index of the user
+	 * @param versionId
+	 *            version id, or {@link FeatureRegistry#NO_VERSION}
+	 */
+	public void set(int user, int versionId) {
+		if (versionId < FeatureRegistry.NO_VERSION || versionId >= FeatureRegistry.MAX_VERSIONS) {
+			throw new IllegalArgumentException("Not a version id: " + versionId);
+		}
+		versions[user] = (byte) versionId;
+	}
+
+	/**
+	 * @param users
+	 *            dense indices of the users
+	 * @param versionId
+	 *            version id, or {@link FeatureRegistry#NO_VERSION}
+	 */
+	public void set(int[] users, int versionId) {
+		for (int u : users) {
+			set(u, versionId);
+		}
+	}
+
+	/**
+	 * @param user
+	 *            dense index of the user
+	 * @return version id of the user, or {@link FeatureRegistry#NO_VERSION}
+	 */
+	public int get(int user) {
+		return versions[user];
+	}
+
+	/**
+	 * @param versionId
+	 *            version id
+	 * @return dense indices of the users on the version
+	 */
+	public BitSet usersOn(int versionId) {
+		BitSet users = new BitSet(versions.length);
+		for (int u = 0; u < versions.length; u++) {
+			if (versions[u] == versionId)
+				users.set(u);
+		}
+		return users;
+	}
+
+	/**
+	 * @param registry
+	 *            registry the version ids come from
+	 * @param featureId
+	 *            feature id
+	 * @return dense indices of the users on a known version the feature
+	 *         doesn't support
+	 */
+	public BitSet unsupportedBy(FeatureRegistry registry, int featureId) {
+		long mask = registry.supportedMask(featureId);
+		BitSet users = new BitSet(versions.length);
+		for (int u = 0; u < versions.length; u++) {
+			int v = versions[u];
+			if (v >= 0 && (mask >>> v & 1) == 0)
+				users.set(u);
+		}
+		return users;
+	}
+
+	/**
+	 * Keeps only the users on a version the feature supports, e.g. to filter an
+	 * infection before deploying it.
+	 *
+	 * @param registry
+	 *            registry the version ids come from
+	 * @param featureId
+	 *            feature id
+	 * @param users
+	 *            dense indices of users
+	 * @return the users of the given ones the feature supports, in order
+	 */
+	public int[] supportedBy(FeatureRegistry registry, int featureId, int[] users) {
+		long mask = registry.supportedMask(featureId);
+		int[] supported = new int[users.length];
+		int count = 0;
+		for (int u : users) {
+			int v = versions[u];
+			if (v >= 0 && (mask >>> v & 1) != 0)
+				supported[count++] = u;
+		}
+		return count == users.length ? supported : Arrays.copyOf(supported, count);
+	}
+
+	/**
+	 * @return number of users on every version id, the last entry counting
+	 *         users whose version is unknown
+	 */
+	public long[] countByVersion() {
+		long[] counts = new long[FeatureRegistry.MAX_VERSIONS + 1];
+		for (byte v : versions) {
+			counts[v < 0 ? FeatureRegistry.MAX_VERSIONS : v]++;
+		}
+		return counts;
+	}
+}
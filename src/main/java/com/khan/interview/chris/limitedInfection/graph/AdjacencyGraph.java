@@ -0,0 +1,50 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+/**
+ * An AdjacencyGraph is a graph of users in compressed-sparse-row form: users
+ * are dense indices and the related users of <code>v</code> are
+ * {@link #neighbour(int) neighbour(e)} for <code>e</code> from
+ * {@link #offset(int) offset(v)} up to <code>offset(v + 1)</code>.
+ * <p>
+ * Traversals only need this view, so they run the same over an in-heap
+ * {@link UserGraph} and a memory-mapped {@link MappedUserGraph}.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public interface AdjacencyGraph {
+
+	/**
+	 * @return number of users in the graph
+	 */
+	int size();
+
+	/**
+	 * @return number of adjacency entries; each undirected relation is counted
+	 *         once from each side
+	 */
+	int edgeCount();
+
+	/**
+	 * @param v
+	 *            dense index of a user, up to and including size()
+	 * @return start of v's adjacency
+	 */
+	int offset(int v);
+
+	/**
+	 * @param e
+	 *            position in the adjacency
+	 * @return the dense index of the user at that position
+	 */
+	int neighbour(int e);
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return number of related users of v
+	 */
+	default int degree(int v) {
+		return offset(v + 1) - offset(v);
+	}
+}
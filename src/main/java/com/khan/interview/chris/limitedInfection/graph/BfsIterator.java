@@ -0,0 +1,97 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * BfsIterator is a breadth first search that yields users as it goes instead
+ * of collecting them: a user's related users are only looked at once the
+ * user itself has been returned. Stopping early skips the rest of the
+ * traversal, so the cost follows the number of users taken rather than the
+ * size of the component.
+ * <p>
+ * Users are yielded in the same order as {@link SerialBfs}, each once. The
+ * queue grows with the users discovered but not yet returned.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class BfsIterator implements PrimitiveIterator.OfInt {
+
+	private final AdjacencyGraph graph;
+	private final BitSet visited;
+	private int[] queue;
+	private int head;
+	private int tail;
+
+	/**
+	 * @param graph
+	 *            the graph to traverse
+	 * @param seeds
+	 *            dense indices to start from
+	 */
+	public BfsIterator(AdjacencyGraph graph, int... seeds) {
+		this.graph = graph;
+		this.visited = new BitSet(graph.size());
+		this.queue = new int[Math.max(16, seeds.length)];
+		for (int s : seeds) {
+			if (!visited.get(s)) {
+				visited.set(s);
+				queue[tail++] = s;
+			}
+		}
+	}
+
+	/**
+	 * @param graph
+	 *            the graph to traverse
+	 * @param seeds
+	 *            dense indices to start from
+	 * @return a lazy, sequential stream of every user connected to one of the
+	 *         seeds
+	 */
+	public static IntStream stream(AdjacencyGraph graph, int... seeds) {
+		return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(new BfsIterator(graph, seeds),
+				Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return head < tail;
+	}
+
+	@Override
+	public int nextInt() {
+		if (head == tail) {
+			throw new NoSuchElementException();
+		}
+		int v = queue[head++];
+		for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+			int w = graph.neighbour(e);
+			if (!visited.get(w)) {
+				visited.set(w);
+				if (tail == queue.length)
+					makeRoom();
+				queue[tail++] = w;
+			}
+		}
+		return v;
+	}
+
+	private void makeRoom() {
+		if (head >= queue.length / 2) {
+			// drop the users already returned rather than growing
+			System.arraycopy(queue, head, queue, 0, tail - head);
+			tail -= head;
+			head = 0;
+		} else {
+			queue = Arrays.copyOf(queue, (int) Math.min((long) queue.length * 2, graph.size()));
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CohortPartitioner cuts an {@link IndexedGraph} into a given number of
+ * cohorts of roughly equal size while cutting as few coach/student relations
+ * as it can, so a giant component can still be rolled out to a percentage of
+ * users.
+ * <p>
+ * Users are first laid out in breadth first order, component after component,
+ * and cut into equal slices, which already keeps most classrooms in one slice.
+ * Then rounds of size constrained label propagation move every user to the
+ * cohort most of its related users are in, as long as that cohort has room
+ * and the user's own cohort doesn't drop below its minimum. Even rounds only
+ * move users to higher cohort ids and odd rounds to lower ones, so pairs of
+ * users don't keep swapping places.
+ * </p>
+ * <p>
+ * Each round splits the users into chunks refined on a {@link ForkJoinPool}.
+ * Labels are double-buffered: a round reads every related user's cohort from
+ * the previous round and writes the moves to a copy, each chunk only the
+ * labels of its own users, so no task sees a move half applied. Cohort sizes
+ * are updated atomically along with the copy, so they always match it. Only
+ * cohorts filling up make a round depend on the order tasks run in. Every
+ * round is linear in the number of relations.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class CohortPartitioner {
+
+	/**
+	 * Default number of users refined by a single task.
+	 */
+	public static final int DEFAULT_GRAIN = 4096;
+
+	/**
+	 * Default cap on the number of label propagation rounds.
+	 */
+	public static final int DEFAULT_MAX_ROUNDS = 20;
+
+	/**
+	 * Default fraction a cohort may be above or below the average size.
+	 */
+	public static final double DEFAULT_IMBALANCE = 0.03;
+
+	private final ForkJoinPool pool;
+	private final int grain;
+	private int maxRounds = DEFAULT_MAX_ROUNDS;
+	private double imbalance = DEFAULT_IMBALANCE;
+
+	/**
+	 * Creates a partitioner running on the common fork-join pool.
+	 */
+	public CohortPartitioner() {
+		this(ForkJoinPool.commonPool(), DEFAULT_GRAIN);
+	}
+
+	/**
+	 * @param pool
+	 *            pool to refine the cohorts on
+	 * @param grain
+	 *            number of users refined by a single task
+	 */
+	public CohortPartitioner(ForkJoinPool pool, int grain) {
+		if (grain <= 0) {
+			throw new IllegalArgumentException("grain must be positive");
+		}
+		this.pool = pool;
+		this.grain = grain;
+	}
+
+	/**
+	 * @param maxRounds
+	 *            cap on the number of label propagation rounds, 0 to keep the
+	 *            initial slices
+	 */
+	public void setMaxRounds(int maxRounds) {
+		if (maxRounds < 0) {
+			throw new IllegalArgumentException("maxRounds must not be negative");
+		}
+		this.maxRounds = maxRounds;
+	}
+
+	/**
+	 * @param imbalance
+	 *            fraction a cohort may be above or below the average size
+	 */
+	public void setImbalance(double imbalance) {
+		if (imbalance < 0 || imbalance >= 1) {
+			throw new IllegalArgumentException("imbalance must be in [0, 1)");
+		}
+		this.imbalance = imbalance;
+	}
+
+	/**
+	 * Partitions the graph. Stops once a round moves less than one in a
+	 * thousand users.
+	 *
+	 * @param graph
+	 *            the graph to partition
+	 * @param k
+	 *            number of cohorts
+	 * @return the cohorts
+	 */
+	public Cohorts partition(IndexedGraph graph, int k) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k must be positive");
+		}
+		int n = graph.size();
+		int[] cohortOf = new int[n];
+		AtomicIntegerArray sizes = new AtomicIntegerArray(k);
+		ConnectedComponents components = ConnectedComponents.of(graph);
+		int at = 0;
+		for (int c = 0; c < components.count(); c++) {
+			for (int v : components.memberIndices(c)) {
+				int cohort = (int) ((long) at++ * k / n);
+				cohortOf[v] = cohort;
+				sizes.incrementAndGet(cohort);
+			}
+		}
+
+		double average = (double) n / k;
+		int maxSize = (int) Math.ceil(average * (1 + imbalance));
+		int minSize = (int) Math.floor(average * (1 - imbalance));
+		for (int round = 0; round < maxRounds; round++) {
+			LongAdder moves = new LongAdder();
+			int[] next = cohortOf.clone();
+			pool.invoke(new Refine(graph, cohortOf, next, sizes, minSize, maxSize, round % 2 == 0, 0, n, moves));
+			cohortOf = next;
+			if (moves.sum() * 1000 < n)
+				break;
+		}
+		return new Cohorts(graph, cohortOf, k);
+	}
+
+	/**
+	 * Atomically adds delta to the size of cohort c unless that takes it past
+	 * bound.
+	 *
+	 * @return true if the size was changed
+	 */
+	private static boolean resize(AtomicIntegerArray sizes, int c, int delta, int bound) {
+		int size;
+		do {
+			size = sizes.get(c);
+			if (delta > 0 ? size + delta > bound : size + delta < bound)
+				return false;
+		} while (!sizes.compareAndSet(c, size, size + delta));
+		return true;
+	}
+
+	/**
+	 * Moves the users in [from .. to) to the cohort most of their related
+	 * users were in in the previous round.
+	 */
+	private final class Refine extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final IndexedGraph graph;
+		// labels of the previous round, only read
+		private final int[] cohortOf;
+		// labels of this round, written for [from .. to) only
+		private final int[] next;
+		private final AtomicIntegerArray sizes;
+		private final int minSize;
+		private final int maxSize;
+		private final boolean upwards;
+		private final int from;
+		private final int to;
+		private final LongAdder moves;
+
+		Refine(IndexedGraph graph, int[] cohortOf, int[] next, AtomicIntegerArray sizes, int minSize, int maxSize,
+				boolean upwards, int from, int to, LongAdder moves) {
+			this.graph = graph;
+			this.cohortOf = cohortOf;
+			this.next = next;
+			this.sizes = sizes;
+			this.minSize = minSize;
+			this.maxSize = maxSize;
+			this.upwards = upwards;
+			this.from = from;
+			this.to = to;
+			this.moves = moves;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Refine(graph, cohortOf, next, sizes, minSize, maxSize, upwards, from, mid, moves),
+						new Refine(graph, cohortOf, next, sizes, minSize, maxSize, upwards, mid, to, moves));
+				return;
+			}
+			int[] related = new int[16];
+			int moved = 0;
+			for (int v = from; v < to; v++) {
+				int start = graph.offset(v);
+				int degree = graph.offset(v + 1) - start;
+				if (degree == 0)
+					continue;
+				if (degree > related.length)
+					related = new int[Math.max(degree, related.length * 2)];
+				for (int i = 0; i < degree; i++) {
+					related[i] = cohortOf[graph.neighbour(start + i)];
+				}
+				// sorted, so every cohort's related users form one run
+				Arrays.sort(related, 0, degree);
+				int own = cohortOf[v];
+				int ownCount = 0;
+				int best = -1;
+				int bestCount = 0;
+				for (int i = 0; i < degree;) {
+					int c = related[i];
+					int j = i;
+					while (j < degree && related[j] == c)
+						j++;
+					if (c == own) {
+						ownCount = j - i;
+					} else if (j - i > bestCount && (upwards ? c > own : c < own) && sizes.get(c) < maxSize) {
+						best = c;
+						bestCount = j - i;
+					}
+					i = j;
+				}
+				if (best < 0 || bestCount <= ownCount)
+					continue;
+				if (!resize(sizes, own, -1, minSize))
+					continue;
+				if (!resize(sizes, best, 1, maxSize)) {
+					sizes.incrementAndGet(own);
+					continue;
+				}
+				next[v] = best;
+				moved++;
+			}
+			moves.add(moved);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * Cohorts splits the users of an {@link IndexedGraph} into rollout cohorts of
+ * roughly equal size, made by a {@link CohortPartitioner}. Unlike connected
+ * components, cohorts cut relations between coaches and students; the
+ * partitioner keeps the number of cut relations low.
+ * <p>
+ * Cohorts implement {@link ComponentIndex}, with a cohort in place of a
+ * component, so limited infections can choose cohorts the same way they choose
+ * total infections.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class Cohorts implements ComponentIndex {
+
+	private final IndexedGraph graph;
+	// cohort id of every user
+	private final int[] cohortOf;
+	// users grouped by cohort, ascending within a cohort
+	private final int[] order;
+	// members of cohort c are order[starts[c] .. starts[c + 1])
+	private final int[] starts;
+	private final long cutEdges;
+
+	/**
+	 * @param graph
+	 *            the partitioned graph
+	 * @param cohortOf
+	 *            cohort id of every user, each below count
+	 * @param count
+	 *            number of cohorts
+	 */
+	Cohorts(IndexedGraph graph, int[] cohortOf, int count) {
+		this.graph = graph;
+		this.cohortOf = cohortOf;
+		int n = cohortOf.length;
+		int[] starts = new int[count + 1];
+		for (int v = 0; v < n; v++) {
+			starts[cohortOf[v] + 1]++;
+		}
+		for (int c = 0; c < count; c++) {
+			starts[c + 1] += starts[c];
+		}
+		int[] next = Arrays.copyOf(starts, count);
+		int[] order = new int[n];
+		long cut = 0;
+		for (int v = 0; v < n; v++) {
+			order[next[cohortOf[v]]++] = v;
+			for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+				if (cohortOf[graph.neighbour(e)] != cohortOf[v])
+					cut++;
+			}
+		}
+		this.order = order;
+		this.starts = starts;
+		// every relation is stored in both directions
+		this.cutEdges = cut / 2;
+	}
+
+	/**
+	 * @return number of cohorts
+	 */
+	public int count() {
+		return starts.length - 1;
+	}
+
+	/**
+	 * @return the graph that was partitioned
+	 */
+	public IndexedGraph graph() {
+		return graph;
+	}
+
+	/**
+	 * @return number of relations between users of different cohorts
+	 */
+	public long cutEdges() {
+		return cutEdges;
+	}
+
+	/**
+	 * @param chosen
+	 *            ids of the cohorts to infect
+	 * @return number of relations between a user of the chosen cohorts and one
+	 *         of the others
+	 */
+	public long cutEdges(BitSet chosen) {
+		long cut = 0;
+		for (int c = chosen.nextSetBit(0); c >= 0; c = chosen.nextSetBit(c + 1)) {
+			for (int i = starts[c]; i < starts[c + 1]; i++) {
+				int v = order[i];
+				for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+					if (!chosen.get(cohortOf[graph.neighbour(e)]))
+						cut++;
+				}
+			}
+		}
+		return cut;
+	}
+
+	@Override
+	public int indexOf(User user) {
+		return graph.indexOf(user);
+	}
+
+	@Override
+	public int componentOf(int v) {
+		return cohortOf[v];
+	}
+
+	@Override
+	public int componentSize(int c) {
+		return starts[c + 1] - starts[c];
+	}
+
+	@Override
+	public int componentIdBound() {
+		return count();
+	}
+
+	@Override
+	public List<User> members(int c) {
+		return graph.toUsers(memberIndices(c));
+	}
+
+	/**
+	 * @param c
+	 *            cohort id
+	 * @return dense indices of every user in the cohort
+	 */
+	public int[] memberIndices(int c) {
+		return Arrays.copyOfRange(order, starts[c], starts[c + 1]);
+	}
+
+	@Override
+	public String toString() {
+		return "Cohorts [count=" + count() + ", users=" + order.length + ", cutEdges=" + cutEdges + "]";
+	}
+}
@@ -0,0 +1,302 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * ComponentCache keeps the members of recently asked components, keyed by
+ * graph version and component id, so repeated infections of the same
+ * components skip the traversal.
+ * <p>
+ * The cache is bounded both by number of entries and by total weight (the
+ * number of users held), evicting the least recently used entries first. A
+ * component larger than the weight bound on its own is never cached. Values
+ * are shared between callers and must not be modified.
+ * </p>
+ * <p>
+ * Entries of a {@link DynamicComponents} are dropped as soon as a relation
+ * touches their component through the listener of {@link #invalidator(long)}.
+ * Entries of an immutable graph version never go stale; {@link #retainVersion}
+ * drops the older versions once a new one is published. Thread safe.
+ * </p>
+ *
+ * @author Christopher Chen
+ *
+ * @param <V>
+ *            the members of a component, e.g. a list of users or an array of
+ *            indices
+ */
+public final class ComponentCache<V> {
+
+	/**
+	 * Default number of components kept.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	/**
+	 * Default number of users kept over all components.
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 1L << 24;
+
+	/**
+	 * Computes the members of a component on a cache miss.
+	 */
+	public interface Loader<V> {
+
+		/**
+		 * @param c
+		 *            component id
+		 * @return the members of the component
+		 */
+		V load(int c);
+	}
+
+	/**
+	 * Measures how much of the weight bound a value takes up.
+	 */
+	public interface Weigher<V> {
+
+		/**
+		 * @param value
+		 *            the members of a component
+		 * @return number of users in value
+		 */
+		int weigh(V value);
+	}
+
+	private final int maxEntries;
+	private final long maxWeight;
+	private final Weigher<V> weigher;
+	// access ordered, so iteration starts at the least recently used entry
+	private final LinkedHashMap<Key, Entry<V>> entries = new LinkedHashMap<Key, Entry<V>>(16, 0.75f, true);
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/**
+	 * @param maxEntries
+	 *            number of components kept
+	 * @param maxWeight
+	 *            number of users kept over all components
+	 * @param weigher
+	 *            measures the number of users of a value
+	 */
+	public ComponentCache(int maxEntries, long maxWeight, Weigher<V> weigher) {
+		if (maxEntries <= 0 || maxWeight <= 0) {
+			throw new IllegalArgumentException("maxEntries and maxWeight must be positive");
+		}
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * @return a cache with the default bounds holding lists of users
+	 */
+	public static ComponentCache<List<User>> forUsers() {
+		return new ComponentCache<List<User>>(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT, new Weigher<List<User>>() {
+			@Override
+			public int weigh(List<User> value) {
+				return value.size();
+			}
+		});
+	}
+
+	/**
+	 * @return a cache with the default bounds holding arrays of dense indices
+	 */
+	public static ComponentCache<int[]> forIndices() {
+		return new ComponentCache<int[]>(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT, new Weigher<int[]>() {
+			@Override
+			public int weigh(int[] value) {
+				return value.length;
+			}
+		});
+	}
+
+	/**
+	 * Looks up the members of a component, loading them on a miss. The loader
+	 * runs outside of the cache's lock, so concurrent misses on the same
+	 * component may both load it.
+	 *
+	 * @param version
+	 *            version of the graph the component id belongs to
+	 * @param c
+	 *            component id
+	 * @param loader
+	 *            computes the members on a miss
+	 * @return the members of the component
+	 */
+	public V get(long version, int c, Loader<V> loader) {
+		Key key = new Key(version, c);
+		long generation;
+		synchronized (this) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				hits++;
+				return entry.value;
+			}
+			misses++;
+			generation = invalidations;
+		}
+		V value = loader.load(c);
+		int w = weigher.weigh(value);
+		synchronized (this) {
+			// don't cache members loaded before an invalidation
+			if (generation != invalidations || w > maxWeight || entries.containsKey(key))
+				return value;
+			entries.put(key, new Entry<V>(value, w));
+			weight += w;
+			Iterator<Entry<V>> eldest = entries.values().iterator();
+			while (entries.size() > maxEntries || weight > maxWeight) {
+				weight -= eldest.next().weight;
+				eldest.remove();
+				evictions++;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Drops the cached members of one component.
+	 *
+	 * @param version
+	 *            version of the graph the component id belongs to
+	 * @param c
+	 *            component id
+	 */
+	public synchronized void invalidate(long version, int c) {
+		invalidations++;
+		Entry<V> entry = entries.remove(new Key(version, c));
+		if (entry != null)
+			weight -= entry.weight;
+	}
+
+	/**
+	 * Drops every entry.
+	 */
+	public synchronized void invalidateAll() {
+		invalidations++;
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Drops the entries of every other version.
+	 *
+	 * @param version
+	 *            the version to keep
+	 */
+	public synchronized void retainVersion(long version) {
+		// loads still running for the old version must not be cached
+		invalidations++;
+		Iterator<Map.Entry<Key, Entry<V>>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, Entry<V>> entry = it.next();
+			if (entry.getKey().version != version) {
+				weight -= entry.getValue().weight;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param version
+	 *            version the entries of the component index are cached under
+	 * @return a listener dropping the entries of changed components, to add to
+	 *         a {@link DynamicComponents}
+	 */
+	public ComponentListener invalidator(final long version) {
+		return new ComponentListener() {
+			@Override
+			public void componentChanged(int c) {
+				invalidate(version, c);
+			}
+
+			@Override
+			public void allComponentsChanged() {
+				invalidateAll();
+			}
+		};
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public synchronized long hitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return number of lookups that had to load the members
+	 */
+	public synchronized long missCount() {
+		return misses;
+	}
+
+	/**
+	 * @return number of entries evicted to stay within the bounds
+	 */
+	public synchronized long evictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return number of entries currently cached
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return number of users currently cached over all entries
+	 */
+	public synchronized long weight() {
+		return weight;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ComponentCache [size=" + entries.size() + ", weight=" + weight + ", hits=" + hits + ", misses="
+				+ misses + ", evictions=" + evictions + "]";
+	}
+
+	private static final class Key {
+		final long version;
+		final int component;
+
+		Key(long version, int component) {
+			this.version = version;
+			this.component = component;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Long.hashCode(version) + component;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return version == other.version && component == other.component;
+		}
+	}
+
+	private static final class Entry<V> {
+		final V value;
+		final int weight;
+
+		Entry(V value, int weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
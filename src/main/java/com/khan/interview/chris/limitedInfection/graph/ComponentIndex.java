@@ -0,0 +1,92 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.BitSet;
+import java.util.List;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * A ComponentIndex knows which connected component (total infection) every
+ * user belongs to, so infections can be answered without traversing the
+ * graph. Users are addressed by a dense index and components by an id below
+ * {@link #componentIdBound()}.
+ *
+ * @author Christopher Chen
+ */
+public interface ComponentIndex {
+
+	/**
+	 * @param user
+	 *            the user to look up
+	 * @return the dense index of the user, or -1 if the user is not indexed
+	 */
+	int indexOf(User user);
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return the component id of the user
+	 */
+	int componentOf(int v);
+
+	/**
+	 * @param c
+	 *            component id
+	 * @return number of users in the component
+	 */
+	int componentSize(int c);
+
+	/**
+	 * @return an upper bound (exclusive) on component ids
+	 */
+	int componentIdBound();
+
+	/**
+	 * @param c
+	 *            component id
+	 * @return every user in the component
+	 */
+	List<User> members(int c);
+
+	/**
+	 * Maps users to the components they belong to.
+	 *
+	 * @param users
+	 *            indexed users
+	 * @return ids of the components containing at least one of the users
+	 * @throws IllegalArgumentException
+	 *             if one of the users is not indexed
+	 */
+	default BitSet componentsOf(List<User> users) {
+		BitSet components = new BitSet(componentIdBound());
+		for (User u : users) {
+			int v = indexOf(u);
+			if (v < 0) {
+				throw new IllegalArgumentException("User is not part of the graph: " + u);
+			}
+			components.set(componentOf(v));
+		}
+		return components;
+	}
+
+	/**
+	 * @param limit
+	 *            cap on the component size
+	 * @param candidates
+	 *            ids of the components to choose from
+	 * @return the largest candidate component under or equal to the limit, or
+	 *         -1 if there is none
+	 */
+	default int largestAtMost(int limit, BitSet candidates) {
+		int best = -1;
+		int bestSize = 0;
+		for (int c = candidates.nextSetBit(0); c >= 0; c = candidates.nextSetBit(c + 1)) {
+			int size = componentSize(c);
+			if (size <= limit && size > bestSize) {
+				best = c;
+				bestSize = size;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,24 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+/**
+ * A ComponentListener is told when components of a {@link DynamicComponents}
+ * change, so results derived from them can be invalidated.
+ *
+ * @author Christopher Chen
+ */
+public interface ComponentListener {
+
+	/**
+	 * Called before the component gains or loses members. Merging two
+	 * components reports both of them.
+	 *
+	 * @param c
+	 *            id of the component
+	 */
+	void componentChanged(int c);
+
+	/**
+	 * Called when any component may have changed, including its id.
+	 */
+	void allComponentsChanged();
+}
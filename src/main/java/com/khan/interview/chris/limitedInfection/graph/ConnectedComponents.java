@@ -0,0 +1,211 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * ConnectedComponents labels every user of an {@link IndexedGraph} with the
+ * id of the connected component (the total infection) it belongs to, using a
+ * single breadth first sweep over the graph.
+ * <p>
+ * Members of a component are stored contiguously, so the total infection of
+ * any user is available without traversing again, and component ids are
+ * indexed by size so the largest component under a limit is a binary search.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class ConnectedComponents implements ComponentIndex {
+
+	private final IndexedGraph graph;
+	// component id of every user
+	private final int[] componentOf;
+	// users grouped by component, in the order the sweep discovered them
+	private final int[] order;
+	// members of component c are order[starts[c] .. starts[c + 1])
+	private final int[] starts;
+	// component ids sorted by ascending size
+	private final int[] bySize;
+	private final int[] sortedSizes;
+
+	private ConnectedComponents(IndexedGraph graph, int[] componentOf, int[] order, int[] starts) {
+		this.graph = graph;
+		this.componentOf = componentOf;
+		this.order = order;
+		this.starts = starts;
+
+		int count = starts.length - 1;
+		long[] packed = new long[count];
+		for (int c = 0; c < count; c++) {
+			packed[c] = ((long) (starts[c + 1] - starts[c]) << 32) | c;
+		}
+		Arrays.sort(packed);
+		this.bySize = new int[count];
+		this.sortedSizes = new int[count];
+		for (int i = 0; i < count; i++) {
+			bySize[i] = (int) packed[i];
+			sortedSizes[i] = (int) (packed[i] >>> 32);
+		}
+	}
+
+	/**
+	 * Labels the components of the given graph.
+	 *
+	 * @param graph
+	 *            the graph to label
+	 */
+	public static ConnectedComponents of(IndexedGraph graph) {
+		int n = graph.size();
+		int[] componentOf = new int[n];
+		Arrays.fill(componentOf, -1);
+		// the BFS queue doubles as the grouped member order
+		int[] order = new int[n];
+		int[] starts = new int[n + 1];
+		int count = 0;
+		int tail = 0;
+		for (int root = 0; root < n; root++) {
+			if (componentOf[root] >= 0)
+				continue;
+			starts[count] = tail;
+			componentOf[root] = count;
+			order[tail++] = root;
+			for (int head = starts[count]; head < tail; head++) {
+				int v = order[head];
+				for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+					int w = graph.neighbour(e);
+					if (componentOf[w] < 0) {
+						componentOf[w] = count;
+						order[tail++] = w;
+					}
+				}
+			}
+			count++;
+		}
+		starts[count] = tail;
+		return new ConnectedComponents(graph, componentOf, order, Arrays.copyOf(starts, count + 1));
+	}
+
+	/**
+	 * @return number of components
+	 */
+	public int count() {
+		return starts.length - 1;
+	}
+
+	/**
+	 * @return the graph that was labelled
+	 */
+	public IndexedGraph graph() {
+		return graph;
+	}
+
+	@Override
+	public int indexOf(User user) {
+		return graph.indexOf(user);
+	}
+
+	@Override
+	public int componentOf(int v) {
+		return componentOf[v];
+	}
+
+	@Override
+	public int componentSize(int c) {
+		return starts[c + 1] - starts[c];
+	}
+
+	@Override
+	public int componentIdBound() {
+		return count();
+	}
+
+	@Override
+	public List<User> members(int c) {
+		return graph.toUsers(memberIndices(c));
+	}
+
+	/**
+	 * @param c
+	 *            component id
+	 * @return dense indices of every user in the component
+	 */
+	public int[] memberIndices(int c) {
+		return Arrays.copyOfRange(order, starts[c], starts[c + 1]);
+	}
+
+	/**
+	 * @param rank
+	 *            position in the size index, 0 being the smallest component
+	 * @return the component id at that position
+	 */
+	public int componentBySize(int rank) {
+		return bySize[rank];
+	}
+
+	/**
+	 * Looks up the position in the size index of the largest component whose
+	 * size is under or equal to the limit. Components of smaller rank are never
+	 * larger.
+	 *
+	 * @param limit
+	 *            cap on the component size
+	 * @return rank of that component, or -1 if every component is larger than
+	 *         the limit
+	 */
+	public int rankAtMost(int limit) {
+		int lo = 0;
+		int hi = sortedSizes.length;
+		// first rank with a size above the limit
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sortedSizes[mid] <= limit)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo - 1;
+	}
+
+	/**
+	 * @param limit
+	 *            cap on the component size
+	 * @return id of the largest component under or equal to the limit, or -1 if
+	 *         there is none
+	 */
+	public int largestAtMost(int limit) {
+		int rank = rankAtMost(limit);
+		return rank < 0 ? -1 : bySize[rank];
+	}
+
+	/**
+	 * Walks down the size index from the largest component under the limit
+	 * until one of the candidates is found, or, when there are fewer
+	 * candidates than components under the limit, looks at every candidate
+	 * instead. Either way, of equally large candidates the one with the
+	 * highest id is chosen.
+	 */
+	@Override
+	public int largestAtMost(int limit, BitSet candidates) {
+		int top = rankAtMost(limit);
+		if (candidates.cardinality() <= top) {
+			int best = -1;
+			int bestSize = 0;
+			for (int c = candidates.nextSetBit(0); c >= 0; c = candidates.nextSetBit(c + 1)) {
+				int size = componentSize(c);
+				if (size <= limit && size >= bestSize) {
+					best = c;
+					bestSize = size;
+				}
+			}
+			return best;
+		}
+		for (int rank = top; rank >= 0; rank--) {
+			if (candidates.get(bySize[rank]))
+				return bySize[rank];
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,137 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Arrays;
+
+/**
+ * DirectionOptimizingBfs is a breadth first search that switches between the
+ * usual top-down step (every frontier user checks its related users) and a
+ * bottom-up step (every unvisited user looks for a related user in the
+ * frontier, stopping at the first one found).
+ * <p>
+ * In the middle levels of a large, well connected component the frontier
+ * touches most of the remaining edges, and most of those checks find users
+ * that are already visited. Bottom-up is far cheaper there because an
+ * unvisited user stops scanning as soon as it finds a parent. Following
+ * Beamer et al., the search goes bottom-up once the frontier's edges exceed
+ * <code>1 / alpha</code> of the edges still unexplored, and returns top-down
+ * once the frontier shrinks below <code>1 / beta</code> of the users.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class DirectionOptimizingBfs implements Traversal {
+
+	/**
+	 * Default ratio of unexplored edges to frontier edges below which the
+	 * search goes bottom-up.
+	 */
+	public static final int DEFAULT_ALPHA = 14;
+
+	/**
+	 * Default ratio of users to frontier users above which the search goes
+	 * back top-down.
+	 */
+	public static final int DEFAULT_BETA = 24;
+
+	private final int alpha;
+	private final int beta;
+
+	/**
+	 * Creates a traversal with the default switching thresholds.
+	 */
+	public DirectionOptimizingBfs() {
+		this(DEFAULT_ALPHA, DEFAULT_BETA);
+	}
+
+	/**
+	 * @param alpha
+	 *            go bottom-up once frontier edges exceed unexplored edges / alpha
+	 * @param beta
+	 *            go top-down once frontier users drop below users / beta
+	 */
+	public DirectionOptimizingBfs(int alpha, int beta) {
+		if (alpha <= 0 || beta <= 0) {
+			throw new IllegalArgumentException("alpha and beta must be positive");
+		}
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	@Override
+	public int[] reachableFrom(AdjacencyGraph graph, int... seeds) {
+		int n = graph.size();
+		long[] visited = new long[(n + 63) >>> 6];
+		long[] frontier = null;
+		int[] order = new int[n];
+		int tail = 0;
+		// edges of users not visited yet
+		long unexploredEdges = graph.edgeCount();
+		for (int s : seeds) {
+			if (!isSet(visited, s)) {
+				set(visited, s);
+				order[tail++] = s;
+				unexploredEdges -= graph.degree(s);
+			}
+		}
+		boolean bottomUp = false;
+		int head = 0;
+		while (head < tail) {
+			int levelEnd = tail;
+			if (bottomUp) {
+				if (levelEnd - head < n / beta)
+					bottomUp = false;
+			} else {
+				long frontierEdges = 0;
+				for (int i = head; i < levelEnd; i++) {
+					frontierEdges += graph.degree(order[i]);
+				}
+				if (frontierEdges > unexploredEdges / alpha)
+					bottomUp = true;
+			}
+
+			if (bottomUp) {
+				if (frontier == null)
+					frontier = new long[visited.length];
+				else
+					Arrays.fill(frontier, 0L);
+				for (int i = head; i < levelEnd; i++) {
+					set(frontier, order[i]);
+				}
+				for (int v = 0; v < n; v++) {
+					if (isSet(visited, v))
+						continue;
+					for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+						if (isSet(frontier, graph.neighbour(e))) {
+							set(visited, v);
+							order[tail++] = v;
+							unexploredEdges -= graph.degree(v);
+							break;
+						}
+					}
+				}
+			} else {
+				for (int i = head; i < levelEnd; i++) {
+					int v = order[i];
+					for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+						int w = graph.neighbour(e);
+						if (!isSet(visited, w)) {
+							set(visited, w);
+							order[tail++] = w;
+							unexploredEdges -= graph.degree(w);
+						}
+					}
+				}
+			}
+			head = levelEnd;
+		}
+		return Arrays.copyOf(order, tail);
+	}
+
+	private static boolean isSet(long[] bits, int v) {
+		return (bits[v >>> 6] & (1L << v)) != 0;
+	}
+
+	private static void set(long[] bits, int v) {
+		bits[v >>> 6] |= 1L << v;
+	}
+}
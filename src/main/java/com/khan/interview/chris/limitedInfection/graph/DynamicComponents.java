@@ -0,0 +1,280 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * DynamicComponents is a {@link ComponentIndex} that stays current while
+ * relations are added to and removed from the graph.
+ * <p>
+ * Components are kept in a union-find structure (union by size, path halving)
+ * so adding a relation merges two components in near constant time. Members
+ * of every component are chained in a circular linked list that is spliced on
+ * union, so listing a total infection never needs a traversal. Removing a
+ * relation may split a component, which union-find can't express, so it marks
+ * the index stale and the next query rebuilds it from the Users' relations.
+ * </p>
+ * <p>
+ * Component ids are the index of the component's representative user; an id
+ * stays valid until the component is merged into another or the index is
+ * rebuilt. Relations must be changed through {@link #addRelation} and
+ * {@link #removeRelation} (or followed by {@link #rebuild()}) for the index to
+ * see them. {@link ComponentListener}s are told which components changed, so
+ * anything derived from a component can be dropped. Not thread safe.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class DynamicComponents implements ComponentIndex {
+
+	private final List<User> users = new ArrayList<User>();
+	private final Map<User, Integer> index = new IdentityHashMap<User, Integer>();
+	// union-find parent of every user, roots are their own parent
+	private int[] parent = new int[16];
+	// size of each root's component
+	private int[] size = new int[16];
+	// next member in the circular list of the user's component
+	private int[] next = new int[16];
+	// a relation was removed since the last rebuild
+	private boolean stale;
+	// merges during a rebuild are reported as one change of every component
+	private boolean rebuilding;
+	private final List<ComponentListener> listeners = new ArrayList<ComponentListener>();
+
+	/**
+	 * Indexes the given users, everyone reachable from them, and the relations
+	 * between them.
+	 *
+	 * @param users
+	 *            the users making up the graph
+	 */
+	public DynamicComponents(List<User> users) {
+		for (User u : users) {
+			addUser(u);
+		}
+	}
+
+	/**
+	 * @param listener
+	 *            told about every component changed from now on
+	 */
+	public void addListener(ComponentListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener
+	 *            a listener added before
+	 */
+	public void removeListener(ComponentListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Indexes a user together with its current relations. Related users that
+	 * aren't indexed yet are added as well.
+	 *
+	 * @param user
+	 *            the user to add
+	 * @return the dense index of the user
+	 */
+	public int addUser(User user) {
+		Integer existing = index.get(user);
+		if (existing != null)
+			return existing;
+		int first = users.size();
+		append(user);
+		// link every newly discovered user to its relations
+		for (int i = first; i < users.size(); i++) {
+			List<User> related = users.get(i).getRelatedUsers();
+			if (related == null)
+				continue;
+			for (User r : related) {
+				Integer j = index.get(r);
+				if (j == null) {
+					j = users.size();
+					append(r);
+				}
+				union(i, j);
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Relates the two users (see {@link User#addRelatedUser(User)}) and merges
+	 * their components.
+	 *
+	 * @param a
+	 *            one user of the relation, indexed if it isn't already
+	 * @param b
+	 *            the other user of the relation, indexed if it isn't already
+	 */
+	public void addRelation(User a, User b) {
+		a.addRelatedUser(b);
+		union(addUser(a), addUser(b));
+	}
+
+	/**
+	 * Removes the relation between the two users (see
+	 * {@link User#removeRelatedUser(User)}). The index is rebuilt on the next
+	 * query.
+	 *
+	 * @param a
+	 *            one user of the relation
+	 * @param b
+	 *            the other user of the relation
+	 */
+	public void removeRelation(User a, User b) {
+		if (a.hasRelatedUser(b)) {
+			a.removeRelatedUser(b);
+			stale = true;
+			// the component may split, and ids change on the rebuild
+			for (ComponentListener listener : listeners) {
+				listener.allComponentsChanged();
+			}
+		}
+	}
+
+	/**
+	 * Recomputes every component from the current relations of the indexed
+	 * users, picking up removed relations and relations added outside of this
+	 * index.
+	 */
+	public void rebuild() {
+		int n = users.size();
+		for (int v = 0; v < n; v++) {
+			parent[v] = v;
+			size[v] = 1;
+			next[v] = v;
+		}
+		List<User> snapshot = new ArrayList<User>(users);
+		rebuilding = true;
+		try {
+			for (int v = 0; v < snapshot.size(); v++) {
+				List<User> related = snapshot.get(v).getRelatedUsers();
+				if (related == null)
+					continue;
+				for (User r : related) {
+					union(v, addUser(r));
+				}
+			}
+		} finally {
+			rebuilding = false;
+		}
+		stale = false;
+		for (ComponentListener listener : listeners) {
+			listener.allComponentsChanged();
+		}
+	}
+
+	/**
+	 * @return number of indexed users
+	 */
+	public int size() {
+		return users.size();
+	}
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return the user at that index
+	 */
+	public User userAt(int v) {
+		return users.get(v);
+	}
+
+	@Override
+	public int indexOf(User user) {
+		Integer i = index.get(user);
+		return i == null ? -1 : i;
+	}
+
+	@Override
+	public int componentOf(int v) {
+		refresh();
+		return find(v);
+	}
+
+	@Override
+	public int componentSize(int c) {
+		refresh();
+		return size[find(c)];
+	}
+
+	@Override
+	public int componentIdBound() {
+		return users.size();
+	}
+
+	@Override
+	public List<User> members(int c) {
+		refresh();
+		int root = find(c);
+		List<User> members = new ArrayList<User>(size[root]);
+		int v = root;
+		do {
+			members.add(users.get(v));
+			v = next[v];
+		} while (v != root);
+		return members;
+	}
+
+	private void refresh() {
+		if (stale) {
+			rebuild();
+		}
+	}
+
+	private void append(User user) {
+		int v = users.size();
+		if (v == parent.length) {
+			int capacity = v * 2;
+			parent = Arrays.copyOf(parent, capacity);
+			size = Arrays.copyOf(size, capacity);
+			next = Arrays.copyOf(next, capacity);
+		}
+		users.add(user);
+		index.put(user, v);
+		parent[v] = v;
+		size[v] = 1;
+		next[v] = v;
+	}
+
+	private int find(int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	private void union(int a, int b) {
+		int ra = find(a);
+		int rb = find(b);
+		if (ra == rb)
+			return;
+		if (!rebuilding) {
+			for (ComponentListener listener : listeners) {
+				listener.componentChanged(ra);
+				listener.componentChanged(rb);
+			}
+		}
+		if (size[ra] < size[rb]) {
+			int t = ra;
+			ra = rb;
+			rb = t;
+		}
+		parent[rb] = ra;
+		size[ra] += size[rb];
+		// splice the two circular member lists into one
+		int t = next[ra];
+		next[ra] = next[rb];
+		next[rb] = t;
+	}
+}
@@ -0,0 +1,77 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.BitSet;
+
+/**
+ * GraphVersion pairs an {@link IndexedGraph} with its {@link ConnectedComponents}
+ * and a version number. Both are immutable once built, so a version can be
+ * queried from any number of threads without locking; a newer graph is
+ * published as a new version instead of changing this one.
+ *
+ * @author Christopher Chen
+ */
+public final class GraphVersion {
+
+	private final long version;
+	private final IndexedGraph graph;
+	private final ConnectedComponents components;
+
+	private GraphVersion(long version, IndexedGraph graph, ConnectedComponents components) {
+		this.version = version;
+		this.graph = graph;
+		this.components = components;
+	}
+
+	/**
+	 * Labels the components of the graph up front, so queries never have to.
+	 *
+	 * @param version
+	 *            number of the version
+	 * @param graph
+	 *            the graph of the version
+	 */
+	public static GraphVersion of(long version, IndexedGraph graph) {
+		return new GraphVersion(version, graph, ConnectedComponents.of(graph));
+	}
+
+	/**
+	 * @return number of the version
+	 */
+	public long version() {
+		return version;
+	}
+
+	/**
+	 * @return the graph of the version
+	 */
+	public IndexedGraph graph() {
+		return graph;
+	}
+
+	/**
+	 * @return the components of the graph
+	 */
+	public ConnectedComponents components() {
+		return components;
+	}
+
+	/**
+	 * @param comps
+	 *            component ids
+	 * @return dense indices of every user in one of the components
+	 */
+	public int[] membersOf(BitSet comps) {
+		int total = 0;
+		for (int c = comps.nextSetBit(0); c >= 0; c = comps.nextSetBit(c + 1)) {
+			total += components.componentSize(c);
+		}
+		int[] members = new int[total];
+		int i = 0;
+		for (int c = comps.nextSetBit(0); c >= 0; c = comps.nextSetBit(c + 1)) {
+			int[] component = components.memberIndices(c);
+			System.arraycopy(component, 0, members, i, component.length);
+			i += component.length;
+		}
+		return members;
+	}
+}
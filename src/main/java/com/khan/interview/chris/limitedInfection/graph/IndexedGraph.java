@@ -0,0 +1,87 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * An IndexedGraph is an {@link AdjacencyGraph} that maps its dense indices to
+ * and from Users, so infections asked for in Users can run on it. It is
+ * implemented by the in-heap {@link UserGraph} and by a memory-mapped
+ * {@link MappedUserGraph}, whose Users are only resolved when an answer is
+ * mapped back.
+ *
+ * @author Christopher Chen
+ */
+public interface IndexedGraph extends AdjacencyGraph {
+
+	/**
+	 * @param user
+	 *            the user to look up
+	 * @return the dense index of the user, or -1 if the user is not part of the
+	 *         graph
+	 */
+	int indexOf(User user);
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return the user at that index
+	 */
+	User userAt(int v);
+
+	/**
+	 * @return true if {@link #userAt} returns the same User for an index every
+	 *         time, so features set on the Users it returns are kept
+	 */
+	boolean hasCanonicalUsers();
+
+	/**
+	 * Breadth first search from all of the given starting points at once, see
+	 * {@link SerialBfs}.
+	 *
+	 * @param seeds
+	 *            dense indices to start from
+	 * @return indices of every user connected to one of the seeds, in the order
+	 *         they were discovered
+	 */
+	default int[] reachableFrom(int... seeds) {
+		return Traversal.SERIAL.reachableFrom(this, seeds);
+	}
+
+	/**
+	 * Maps the given users to their dense indices.
+	 *
+	 * @param list
+	 *            users in this graph
+	 * @throws IllegalArgumentException
+	 *             if one of the users is not part of the graph
+	 */
+	default int[] indicesOf(List<User> list) {
+		int[] indices = new int[list.size()];
+		int i = 0;
+		for (User u : list) {
+			int v = indexOf(u);
+			if (v < 0) {
+				throw new IllegalArgumentException("User is not part of the graph: " + u);
+			}
+			indices[i++] = v;
+		}
+		return indices;
+	}
+
+	/**
+	 * Maps dense indices back to their users.
+	 *
+	 * @param indices
+	 *            dense indices of users in this graph
+	 */
+	default List<User> toUsers(int[] indices) {
+		List<User> list = new ArrayList<User>(indices.length);
+		for (int v : indices) {
+			list.add(userAt(v));
+		}
+		return list;
+	}
+}
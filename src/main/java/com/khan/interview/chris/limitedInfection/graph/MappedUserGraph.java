@@ -0,0 +1,403 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * MappedUserGraph is an {@link IndexedGraph} read straight from a binary
+ * snapshot file through memory-mapped buffers. Opening a snapshot only maps the
+ * file, so it takes milliseconds whatever the size of the graph, and the
+ * graph doesn't need to fit in heap: the operating system pages the adjacency
+ * in as traversals touch it.
+ * <p>
+ * Only user ids are stored. Users are looked up by id and resolved from their
+ * id when an answer is mapped back, by default into a new User with no
+ * relations; set a resolver to fetch them from elsewhere. Deploy to
+ * {@link com.khan.interview.chris.limitedInfection.deploy.FeatureAssignments}
+ * or a pipeline rather than the Users themselves unless the resolver returns
+ * the same User every time.
+ * </p>
+ * <p>
+ * A snapshot is written from a {@link UserGraph} with {@link #write}. The
+ * file is little-endian and laid out as:
+ * </p>
+ * <ul>
+ * <li>a 64 byte header: magic, version, user and adjacency counts, and the
+ * position of every section below</li>
+ * <li>CSR offsets, <code>size() + 1</code> ints</li>
+ * <li>CSR neighbours, <code>edgeCount()</code> ints</li>
+ * <li>id dictionary offsets, <code>size() + 1</code> longs into the id
+ * bytes</li>
+ * <li>user indices sorted by id, <code>size()</code> ints, so ids are looked up
+ * by binary search without building a map</li>
+ * <li>the UTF-8 bytes of every user id</li>
+ * </ul>
+ * <p>
+ * Sections larger than the 2 GB a single buffer can map are split over several
+ * buffers. Mapped buffers are released by the garbage collector once the graph
+ * is no longer referenced; {@link #close()} only closes the file.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class MappedUserGraph implements IndexedGraph, Closeable {
+
+	static final int MAGIC = 0x4C494753;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+
+	private final FileChannel channel;
+	private final int size;
+	private final int edgeCount;
+	private final MappedRegion offsets;
+	private final MappedRegion neighbours;
+	private final MappedRegion idOffsets;
+	private final MappedRegion sorted;
+	private final MappedRegion idBytes;
+	private Function<String, User> resolver = new Function<String, User>() {
+		@Override
+		public User apply(String uid) {
+			return new User(uid, uid, new ArrayList<User>(), null);
+		}
+	};
+	// whether a resolver was set, which is trusted to return the same User
+	private boolean canonicalUsers;
+
+	private MappedUserGraph(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0)
+				throw new IOException("Truncated graph snapshot header");
+		}
+		header.flip();
+		if (header.getInt() != MAGIC)
+			throw new IOException("Not a graph snapshot");
+		int version = header.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported graph snapshot version " + version);
+		size = header.getInt();
+		edgeCount = header.getInt();
+		long offsetsPos = header.getLong();
+		long neighboursPos = header.getLong();
+		long idOffsetsPos = header.getLong();
+		long sortedPos = header.getLong();
+		long idBytesPos = header.getLong();
+		long length = header.getLong();
+		if (length != channel.size())
+			throw new IOException("Graph snapshot is " + channel.size() + " bytes, expected " + length);
+
+		offsets = new MappedRegion(channel, offsetsPos, 4L * (size + 1));
+		neighbours = new MappedRegion(channel, neighboursPos, 4L * edgeCount);
+		idOffsets = new MappedRegion(channel, idOffsetsPos, 8L * (size + 1));
+		sorted = new MappedRegion(channel, sortedPos, 4L * size);
+		idBytes = new MappedRegion(channel, idBytesPos, length - idBytesPos);
+	}
+
+	/**
+	 * Maps a snapshot written by {@link #write}.
+	 *
+	 * @param path
+	 *            the snapshot file
+	 * @throws IOException
+	 *             if the file can't be read or isn't a graph snapshot
+	 */
+	public static MappedUserGraph open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new MappedUserGraph(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the given users and every user reachable from them,
+	 * indexed as by {@link UserGraph#of(List)}.
+	 *
+	 * @param users
+	 *            the users making up the graph
+	 * @param path
+	 *            the file to create or overwrite
+	 */
+	public static void write(List<User> users, Path path) throws IOException {
+		write(UserGraph.of(users), path);
+	}
+
+	/**
+	 * Writes a snapshot of the graph, keyed by user id (a null id is written as
+	 * the empty string).
+	 *
+	 * @param graph
+	 *            the graph to write
+	 * @param path
+	 *            the file to create or overwrite
+	 */
+	public static void write(UserGraph graph, Path path) throws IOException {
+		final int n = graph.size();
+		final byte[][] ids = new byte[n][];
+		for (int v = 0; v < n; v++) {
+			String uid = graph.userAt(v).getUID();
+			ids[v] = (uid == null ? "" : uid).getBytes(StandardCharsets.UTF_8);
+		}
+		Integer[] byId = new Integer[n];
+		for (int v = 0; v < n; v++) {
+			byId[v] = v;
+		}
+		Arrays.sort(byId, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return compareBytes(ids[a], ids[b]);
+			}
+		});
+
+		int m = graph.edgeCount();
+		long offsetsPos = HEADER_SIZE;
+		long neighboursPos = offsetsPos + 4L * (n + 1);
+		long idOffsetsPos = align(neighboursPos + 4L * m);
+		long sortedPos = idOffsetsPos + 8L * (n + 1);
+		long idBytesPos = sortedPos + 4L * n;
+		long length = idBytesPos;
+		for (byte[] id : ids) {
+			length += id.length;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m);
+			buffer.putLong(offsetsPos).putLong(neighboursPos).putLong(idOffsetsPos).putLong(sortedPos)
+					.putLong(idBytesPos).putLong(length);
+			for (int v = 0; v <= n; v++) {
+				flushIfFull(channel, buffer, 4);
+				buffer.putInt(graph.offset(v));
+			}
+			for (int e = 0; e < m; e++) {
+				flushIfFull(channel, buffer, 4);
+				buffer.putInt(graph.neighbour(e));
+			}
+			for (long pad = align(neighboursPos + 4L * m) - (neighboursPos + 4L * m); pad > 0; pad--) {
+				flushIfFull(channel, buffer, 1);
+				buffer.put((byte) 0);
+			}
+			long idPos = 0;
+			for (int v = 0; v <= n; v++) {
+				flushIfFull(channel, buffer, 8);
+				buffer.putLong(idPos);
+				if (v < n)
+					idPos += ids[v].length;
+			}
+			for (int i = 0; i < n; i++) {
+				flushIfFull(channel, buffer, 4);
+				buffer.putInt(byId[i]);
+			}
+			for (byte[] id : ids) {
+				for (int off = 0; off < id.length;) {
+					flushIfFull(channel, buffer, 1);
+					int chunk = Math.min(buffer.remaining(), id.length - off);
+					buffer.put(id, off, chunk);
+					off += chunk;
+				}
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int edgeCount() {
+		return edgeCount;
+	}
+
+	@Override
+	public int offset(int v) {
+		return offsets.getInt(v);
+	}
+
+	@Override
+	public int neighbour(int e) {
+		return neighbours.getInt(e);
+	}
+
+	/**
+	 * @param resolver
+	 *            maps a user id to its User when answers are mapped back, the
+	 *            same User for an id every time
+	 */
+	public void setUserResolver(Function<String, User> resolver) {
+		this.resolver = resolver;
+		this.canonicalUsers = true;
+	}
+
+	/**
+	 * Looks up the user by id, see {@link #indexOf(String)}.
+	 */
+	@Override
+	public int indexOf(User user) {
+		return indexOf(user.getUID() == null ? "" : user.getUID());
+	}
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return the user resolved from the id at that index
+	 */
+	@Override
+	public User userAt(int v) {
+		return resolver.apply(uidOf(v));
+	}
+
+	/**
+	 * @return true once a resolver is set; by default every lookup resolves a
+	 *         new User
+	 */
+	@Override
+	public boolean hasCanonicalUsers() {
+		return canonicalUsers;
+	}
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return the user's id
+	 */
+	public String uidOf(int v) {
+		return new String(idBytes(v), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param indices
+	 *            dense indices of users
+	 * @return the ids of those users
+	 */
+	public List<String> uidsOf(int[] indices) {
+		List<String> uids = new ArrayList<String>(indices.length);
+		for (int v : indices) {
+			uids.add(uidOf(v));
+		}
+		return uids;
+	}
+
+	/**
+	 * Looks up a user by id with a binary search over the sorted id section.
+	 *
+	 * @param uid
+	 *            the user's id
+	 * @return the dense index of the user, or -1 if no user has that id
+	 */
+	public int indexOf(String uid) {
+		byte[] key = uid.getBytes(StandardCharsets.UTF_8);
+		int lo = 0;
+		int hi = size - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int v = sorted.getInt(mid);
+			int cmp = compareBytes(idBytes(v), key);
+			if (cmp < 0)
+				lo = mid + 1;
+			else if (cmp > 0)
+				hi = mid - 1;
+			else
+				return v;
+		}
+		return -1;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private byte[] idBytes(int v) {
+		long start = idOffsets.getLong(v);
+		byte[] bytes = new byte[(int) (idOffsets.getLong(v + 1) - start)];
+		idBytes.getBytes(start, bytes);
+		return bytes;
+	}
+
+	private static int compareBytes(byte[] a, byte[] b) {
+		int len = Math.min(a.length, b.length);
+		for (int i = 0; i < len; i++) {
+			int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+			if (cmp != 0)
+				return cmp;
+		}
+		return a.length - b.length;
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	private static void flushIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+		if (buffer.remaining() < needed) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * A read-only region of the file mapped as one or more buffers of at most
+	 * 1 GB, so regions past the 2 GB limit of a single buffer can be read. The
+	 * segment size is a multiple of 8, so no int or long straddles two
+	 * segments.
+	 */
+	static final class MappedRegion {
+		static final int SEGMENT_BITS = 30;
+		static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+		private final MappedByteBuffer[] segments;
+
+		MappedRegion(FileChannel channel, long position, long length) throws IOException {
+			int count = (int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS);
+			segments = new MappedByteBuffer[Math.max(1, count)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = (long) i << SEGMENT_BITS;
+				long size = Math.min(1L << SEGMENT_BITS, length - start);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, Math.max(0, size));
+				segments[i].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+
+		int getInt(long index) {
+			long pos = index << 2;
+			return segments[(int) (pos >>> SEGMENT_BITS)].getInt((int) (pos & SEGMENT_MASK));
+		}
+
+		long getLong(long index) {
+			long pos = index << 3;
+			return segments[(int) (pos >>> SEGMENT_BITS)].getLong((int) (pos & SEGMENT_MASK));
+		}
+
+		void getBytes(long pos, byte[] dst) {
+			for (int i = 0; i < dst.length; i++, pos++) {
+				dst[i] = segments[(int) (pos >>> SEGMENT_BITS)].get((int) (pos & SEGMENT_MASK));
+			}
+		}
+	}
+}
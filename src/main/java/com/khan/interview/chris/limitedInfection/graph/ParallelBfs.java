@@ -0,0 +1,152 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ParallelBfs is a level synchronous, multi-source breadth first search. All
+ * seeds form the first frontier; every following frontier is split into chunks
+ * that are expanded on a {@link ForkJoinPool}, with a shared atomic bitset
+ * deciding which chunk claims a newly discovered user.
+ * <p>
+ * Frontiers smaller than the grain size are expanded on the calling thread, so
+ * small graphs and the thin first and last levels don't pay for forking.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class ParallelBfs implements Traversal {
+
+	/**
+	 * Default number of frontier users expanded by a single task.
+	 */
+	public static final int DEFAULT_GRAIN = 2048;
+
+	private final ForkJoinPool pool;
+	private final int grain;
+
+	/**
+	 * Creates a traversal running on the common fork-join pool.
+	 */
+	public ParallelBfs() {
+		this(ForkJoinPool.commonPool(), DEFAULT_GRAIN);
+	}
+
+	/**
+	 * @param pool
+	 *            pool to expand frontiers on
+	 * @param grain
+	 *            number of frontier users expanded by a single task
+	 */
+	public ParallelBfs(ForkJoinPool pool, int grain) {
+		if (grain <= 0) {
+			throw new IllegalArgumentException("grain must be positive");
+		}
+		this.pool = pool;
+		this.grain = grain;
+	}
+
+	@Override
+	public int[] reachableFrom(AdjacencyGraph graph, int... seeds) {
+		int n = graph.size();
+		AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+		// levels are laid out one after the other, so the discovery order
+		// doubles as the frontier queue
+		int[] order = new int[n];
+		int tail = 0;
+		for (int s : seeds) {
+			if (mark(visited, s))
+				order[tail++] = s;
+		}
+		int head = 0;
+		while (head < tail) {
+			int levelEnd = tail;
+			if (levelEnd - head < grain) {
+				for (int i = head; i < levelEnd; i++) {
+					int v = order[i];
+					for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+						int w = graph.neighbour(e);
+						if (mark(visited, w))
+							order[tail++] = w;
+					}
+				}
+			} else {
+				AtomicInteger out = new AtomicInteger(levelEnd);
+				pool.invoke(new Expand(graph, visited, order, head, levelEnd, out));
+				tail = out.get();
+			}
+			head = levelEnd;
+		}
+		return Arrays.copyOf(order, tail);
+	}
+
+	/**
+	 * Atomically sets the bit of v.
+	 *
+	 * @return true if this call set it, false if it was already set
+	 */
+	static boolean mark(AtomicLongArray bits, int v) {
+		int word = v >>> 6;
+		long bit = 1L << v;
+		long old;
+		do {
+			old = bits.get(word);
+			if ((old & bit) != 0)
+				return false;
+		} while (!bits.compareAndSet(word, old, old | bit));
+		return true;
+	}
+
+	/**
+	 * Expands order[from .. to) and appends the newly discovered users after
+	 * the current level.
+	 */
+	private final class Expand extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final AdjacencyGraph graph;
+		private final AtomicLongArray visited;
+		private final int[] order;
+		private final int from;
+		private final int to;
+		private final AtomicInteger out;
+
+		Expand(AdjacencyGraph graph, AtomicLongArray visited, int[] order, int from, int to, AtomicInteger out) {
+			this.graph = graph;
+			this.visited = visited;
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.out = out;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Expand(graph, visited, order, from, mid, out),
+						new Expand(graph, visited, order, mid, to, out));
+				return;
+			}
+			int[] found = new int[Math.max(16, to - from)];
+			int count = 0;
+			for (int i = from; i < to; i++) {
+				int v = order[i];
+				for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+					int w = graph.neighbour(e);
+					if (mark(visited, w)) {
+						if (count == found.length)
+							found = Arrays.copyOf(found, count * 2);
+						found[count++] = w;
+					}
+				}
+			}
+			if (count > 0) {
+				System.arraycopy(found, 0, order, out.getAndAdd(count), count);
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * PartialInfection grows an infection from seed users with a breadth first
+ * search and stops as soon as it reaches the limit, instead of only ever
+ * infecting whole components. Relations between an infected and an uninfected
+ * user are inconsistent; their number is reported as {@link #brokenEdges()}.
+ * <p>
+ * Users are infected a classroom at a time: a user comes together with every
+ * related user that has no other relation (a coach with the students only they
+ * coach), so whole coach/student stars are kept together. A classroom that
+ * doesn't fit under what is left of the limit is put aside while smaller ones
+ * are taken. Only when nothing more fits whole is the first one put aside
+ * split, taking the coach and as many of their students as fit.
+ * </p>
+ * <p>
+ * The search only looks at the relations of infected users and of the users
+ * next to them, so the cost follows the limit rather than the size of the
+ * component.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class PartialInfection {
+
+	private final int[] members;
+	private final long brokenEdges;
+
+	private PartialInfection(int[] members, long brokenEdges) {
+		this.members = members;
+		this.brokenEdges = brokenEdges;
+	}
+
+	/**
+	 * @param graph
+	 *            the graph to infect
+	 * @param limit
+	 *            cap on the number of users infected
+	 * @param seeds
+	 *            dense indices to grow the infection from, infected first in
+	 *            order while they fit
+	 * @return the infection, empty if the limit is not positive
+	 */
+	public static PartialInfection grow(AdjacencyGraph graph, int limit, int... seeds) {
+		int cap = Math.max(0, Math.min(limit, graph.size()));
+		// grows with the highest index infected rather than the graph
+		BitSet infected = new BitSet();
+		BitSet deferred = new BitSet();
+		int[] members = new int[cap];
+		int count = 0;
+		int[] putAside = new int[16];
+		int asideCount = 0;
+
+		for (int s : seeds) {
+			if (count == cap)
+				break;
+			if (infected.get(s))
+				continue;
+			if (classroomSize(graph, infected, s) <= cap - count) {
+				count = infect(graph, infected, members, count, s, cap);
+			} else if (!deferred.get(s)) {
+				deferred.set(s);
+				putAside = append(putAside, asideCount++, s);
+			}
+		}
+		// members doubles as the queue: users past head still have to be
+		// expanded
+		for (int head = 0; head < count && count < cap; head++) {
+			int v = members[head];
+			for (int e = graph.offset(v), end = graph.offset(v + 1); e < end && count < cap; e++) {
+				int w = graph.neighbour(e);
+				if (infected.get(w) || deferred.get(w))
+					continue;
+				if (classroomSize(graph, infected, w) <= cap - count) {
+					count = infect(graph, infected, members, count, w, cap);
+				} else {
+					deferred.set(w);
+					putAside = append(putAside, asideCount++, w);
+				}
+			}
+		}
+		// nothing else fits whole, so split a classroom to fill up the limit
+		for (int i = 0; i < asideCount && count < cap; i++) {
+			if (!infected.get(putAside[i]))
+				count = infect(graph, infected, members, count, putAside[i], cap);
+		}
+
+		int[] chosen = Arrays.copyOf(members, count);
+		long broken = 0;
+		for (int v : chosen) {
+			for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+				if (!infected.get(graph.neighbour(e)))
+					broken++;
+			}
+		}
+		return new PartialInfection(chosen, broken);
+	}
+
+	/**
+	 * @return number of users infected
+	 */
+	public int size() {
+		return members.length;
+	}
+
+	/**
+	 * @return dense indices of the infected users, in the order they were
+	 *         infected
+	 */
+	public int[] members() {
+		return Arrays.copyOf(members, members.length);
+	}
+
+	/**
+	 * @return number of relations between an infected and an uninfected user
+	 */
+	public long brokenEdges() {
+		return brokenEdges;
+	}
+
+	@Override
+	public String toString() {
+		return "PartialInfection [size=" + members.length + ", brokenEdges=" + brokenEdges + "]";
+	}
+
+	/**
+	 * @return number of users infecting v would infect: v and its uninfected
+	 *         related users without any other relation
+	 */
+	private static int classroomSize(AdjacencyGraph graph, BitSet infected, int v) {
+		int size = 1;
+		for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+			int w = graph.neighbour(e);
+			if (w != v && graph.degree(w) == 1 && !infected.get(w))
+				size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Infects v and as many of its single relation users as fit under cap.
+	 *
+	 * @return the new number of infected users
+	 */
+	private static int infect(AdjacencyGraph graph, BitSet infected, int[] members, int count, int v, int cap) {
+		infected.set(v);
+		members[count++] = v;
+		for (int e = graph.offset(v), end = graph.offset(v + 1); e < end && count < cap; e++) {
+			int w = graph.neighbour(e);
+			if (graph.degree(w) == 1 && !infected.get(w)) {
+				infected.set(w);
+				members[count++] = w;
+			}
+		}
+		return count;
+	}
+
+	private static int[] append(int[] array, int at, int value) {
+		if (at == array.length)
+			array = Arrays.copyOf(array, array.length * 2);
+		array[at] = value;
+		return array;
+	}
+}
@@ -0,0 +1,39 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * SerialBfs is a single threaded, multi-source breadth first search over
+ * primitive arrays, using a bitset for visited users and the result array as
+ * the queue.
+ *
+ * @author Christopher Chen
+ */
+public final class SerialBfs implements Traversal {
+
+	@Override
+	public int[] reachableFrom(AdjacencyGraph graph, int... seeds) {
+		int n = graph.size();
+		BitSet visited = new BitSet(n);
+		int[] queue = new int[n];
+		int tail = 0;
+		for (int s : seeds) {
+			if (!visited.get(s)) {
+				visited.set(s);
+				queue[tail++] = s;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			int v = queue[head];
+			for (int e = graph.offset(v), end = graph.offset(v + 1); e < end; e++) {
+				int w = graph.neighbour(e);
+				if (!visited.get(w)) {
+					visited.set(w);
+					queue[tail++] = w;
+				}
+			}
+		}
+		return Arrays.copyOf(queue, tail);
+	}
+}
@@ -0,0 +1,24 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+/**
+ * A Traversal finds every user of an {@link AdjacencyGraph} connected to a set
+ * of starting points, i.e. the total infection of those starting points.
+ *
+ * @author Christopher Chen
+ */
+public interface Traversal {
+
+	/**
+	 * Single threaded breadth first search, see {@link SerialBfs}.
+	 */
+	Traversal SERIAL = new SerialBfs();
+
+	/**
+	 * @param graph
+	 *            the graph to traverse
+	 * @param seeds
+	 *            dense indices to start from
+	 * @return indices of every user connected to one of the seeds, each once
+	 */
+	int[] reachableFrom(AdjacencyGraph graph, int... seeds);
+}
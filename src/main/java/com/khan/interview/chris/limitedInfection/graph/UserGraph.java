@@ -0,0 +1,171 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * UserGraph is an immutable, compressed-sparse-row (CSR) snapshot of a graph of
+ * Users. Every user is given a dense integer index and the adjacency of user
+ * <code>v</code> is stored in <code>neighbours[offsets[v] .. offsets[v + 1])</code>.
+ * <p>
+ * Traversals over the snapshot only touch primitive arrays, so they avoid the
+ * pointer chasing and per-node allocation of walking
+ * {@link User#getRelatedUsers()} directly. Results are produced as arrays of
+ * indices and mapped back to Users with {@link #toUsers(int[])}. Users are
+ * looked up by identity.
+ * </p>
+ * <p>
+ * The snapshot is taken when the graph is built; relations added to the Users
+ * afterwards are not reflected.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class UserGraph implements IndexedGraph {
+
+	private final User[] users;
+	// user to dense index lookup
+	private final Map<User, Integer> index;
+	// offsets[v] is the start of v's adjacency in neighbours, length size() + 1
+	private final int[] offsets;
+	private final int[] neighbours;
+
+	private UserGraph(User[] users, Map<User, Integer> index, int[] offsets, int[] neighbours) {
+		this.users = users;
+		this.index = index;
+		this.offsets = offsets;
+		this.neighbours = neighbours;
+	}
+
+	/**
+	 * Builds a graph from the given users and every user reachable from them
+	 * through related users. Users are indexed in the order of the provided
+	 * list, followed by any reachable users not in the list.
+	 *
+	 * @param users
+	 *            the users making up the graph
+	 * @return the CSR snapshot of the graph
+	 */
+	public static UserGraph of(List<User> users) {
+		List<User> ordered = new ArrayList<User>(users.size());
+		Map<User, Integer> index = new IdentityHashMap<User, Integer>(users.size());
+		for (User u : users) {
+			if (!index.containsKey(u)) {
+				index.put(u, ordered.size());
+				ordered.add(u);
+			}
+		}
+		// pull in related users that weren't part of the given list
+		int edges = 0;
+		for (int i = 0; i < ordered.size(); i++) {
+			List<User> related = ordered.get(i).getRelatedUsers();
+			if (related == null)
+				continue;
+			edges += related.size();
+			for (User r : related) {
+				if (!index.containsKey(r)) {
+					index.put(r, ordered.size());
+					ordered.add(r);
+				}
+			}
+		}
+
+		int n = ordered.size();
+		int[] offsets = new int[n + 1];
+		int[] neighbours = new int[edges];
+		int e = 0;
+		for (int v = 0; v < n; v++) {
+			offsets[v] = e;
+			List<User> related = ordered.get(v).getRelatedUsers();
+			if (related == null)
+				continue;
+			for (User r : related) {
+				neighbours[e++] = index.get(r);
+			}
+		}
+		offsets[n] = e;
+		return new UserGraph(ordered.toArray(new User[n]), index, offsets, neighbours);
+	}
+
+	/**
+	 * @return number of users in the graph
+	 */
+	@Override
+	public int size() {
+		return users.length;
+	}
+
+	/**
+	 * @return number of adjacency entries; each undirected relation is counted
+	 *         once from each side
+	 */
+	@Override
+	public int edgeCount() {
+		return neighbours.length;
+	}
+
+	/**
+	 * @param user
+	 *            the user to look up
+	 * @return the dense index of the user, or -1 if the user is not part of the
+	 *         graph
+	 */
+	@Override
+	public int indexOf(User user) {
+		Integer i = index.get(user);
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return the user at that index
+	 */
+	@Override
+	public User userAt(int v) {
+		return users[v];
+	}
+
+	/**
+	 * @return true, users are the Users the graph was built from
+	 */
+	@Override
+	public boolean hasCanonicalUsers() {
+		return true;
+	}
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return number of related users of v
+	 */
+	@Override
+	public int degree(int v) {
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/**
+	 * @param v
+	 *            dense index of a user
+	 * @return start of v's adjacency, to be read with {@link #neighbour(int)}
+	 *         up to {@link #offset(int) offset(v + 1)}
+	 */
+	@Override
+	public int offset(int v) {
+		return offsets[v];
+	}
+
+	/**
+	 * @param e
+	 *            position in the adjacency array
+	 * @return the dense index of the user at that position
+	 */
+	@Override
+	public int neighbour(int e) {
+		return neighbours[e];
+	}
+}
@@ -0,0 +1,372 @@
+package com.khan.interview.chris.limitedInfection.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.khan.interview.chris.limitedInfection.model.RelationLoader;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * EdgeListImporter streams coach/student relations out of a CSV or TSV export.
+ * Every line holds the id of the coach and the id of the student as its first
+ * two fields; further fields are ignored, as are blank lines. Fields may be
+ * wrapped in double quotes but can't contain the delimiter.
+ * <p>
+ * The file is read through a {@link FileChannel} into a reused byte buffer and
+ * ids are interned straight from the buffer by a {@link UidDictionary}, so
+ * parsing doesn't allocate per line. Relations are handed to an
+ * {@link EdgeSink} in chunks of dense ids.
+ * </p>
+ * <p>
+ * With a parallelism above one, large files are cut into splits at line
+ * boundaries and parsed concurrently. Each split interns into its own
+ * dictionary and maps its new ids into the shared dictionary once per chunk,
+ * so workers only synchronize when they hand a chunk over. Ids are then handed
+ * out in no particular order.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class EdgeListImporter {
+
+	/**
+	 * Delimiter of comma separated files.
+	 */
+	public static final char CSV = ',';
+
+	/**
+	 * Delimiter of tab separated files.
+	 */
+	public static final char TSV = '\t';
+
+	/**
+	 * Default number of relations handed to the sink at once.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	// splits smaller than this aren't worth a thread
+	static final long MIN_SPLIT = 1 << 16;
+
+	private final byte delimiter;
+	private boolean header;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private int parallelism = 1;
+	private int bufferSize = 1 << 20;
+
+	/**
+	 * @param delimiter
+	 *            field delimiter, {@link #CSV} or {@link #TSV}
+	 */
+	public EdgeListImporter(char delimiter) {
+		if (delimiter > 127 || delimiter == '\n' || delimiter == '\r' || delimiter == '"') {
+			throw new IllegalArgumentException("Unsupported delimiter: " + delimiter);
+		}
+		this.delimiter = (byte) delimiter;
+	}
+
+	/**
+	 * @param header
+	 *            whether the first line of the file is a header to skip
+	 */
+	public void setHeader(boolean header) {
+		this.header = header;
+	}
+
+	/**
+	 * @param chunkSize
+	 *            number of relations handed to the sink at once
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param parallelism
+	 *            number of threads parsing the file
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Size of the read buffer, which grows if a line doesn't fit.
+	 */
+	void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Streams the relations of the file into the sink, interning ids into a new
+	 * dictionary.
+	 *
+	 * @param file
+	 *            the export to read
+	 * @param sink
+	 *            receives the relations
+	 * @return the dictionary mapping dense ids back to user ids
+	 * @throws IOException
+	 *             if the file can't be read or a line has fewer than two fields
+	 */
+	public UidDictionary importEdges(Path file, EdgeSink sink) throws IOException {
+		UidDictionary dictionary = new UidDictionary();
+		importEdges(file, dictionary, sink);
+		return dictionary;
+	}
+
+	/**
+	 * Streams the relations of the file into the sink, interning ids into the
+	 * given dictionary so several files can share one id space.
+	 *
+	 * @param file
+	 *            the export to read
+	 * @param dictionary
+	 *            the dictionary to intern ids into
+	 * @param sink
+	 *            receives the relations
+	 * @throws IOException
+	 *             if the file can't be read or a line has fewer than two fields
+	 */
+	public void importEdges(Path file, UidDictionary dictionary, EdgeSink sink) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			int splits = (int) Math.max(1, Math.min(parallelism, length / MIN_SPLIT));
+			if (splits == 1) {
+				new SplitParser(channel, 0, length, dictionary, dictionary, sink).run();
+				return;
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(splits);
+			try {
+				List<Future<?>> futures = new ArrayList<Future<?>>(splits);
+				for (int i = 0; i < splits; i++) {
+					long start = length / splits * i;
+					long end = i == splits - 1 ? length : length / splits * (i + 1);
+					final SplitParser parser = new SplitParser(channel, start, end, new UidDictionary(), dictionary,
+							sink);
+					futures.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws IOException {
+							parser.run();
+							return null;
+						}
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while importing " + file, e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new IOException(e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Reads the file into users, one per distinct id in the order the ids were
+	 * interned, related through {@link RelationLoader}. Every user's id and
+	 * username are both set to the id from the file.
+	 * <p>
+	 * The relations are buffered as ints and loaded in one pass at the end,
+	 * since the users have to fit in heap anyway.
+	 * </p>
+	 *
+	 * @param file
+	 *            the export to read
+	 * @return the users of the file
+	 * @throws IOException
+	 *             if the file can't be read or a line has fewer than two fields
+	 */
+	public List<User> importUsers(Path file) throws IOException {
+		final int[][] edges = { new int[1024], new int[1024] };
+		final int[] count = { 0 };
+		UidDictionary dictionary = importEdges(file, new EdgeSink() {
+			@Override
+			public void accept(int[] from, int[] to, int n) {
+				if (count[0] + n > edges[0].length) {
+					int grown = Math.max(edges[0].length * 2, count[0] + n);
+					edges[0] = Arrays.copyOf(edges[0], grown);
+					edges[1] = Arrays.copyOf(edges[1], grown);
+				}
+				System.arraycopy(from, 0, edges[0], count[0], n);
+				System.arraycopy(to, 0, edges[1], count[0], n);
+				count[0] += n;
+			}
+		});
+		List<User> users = new ArrayList<User>(dictionary.size());
+		for (int id = 0; id < dictionary.size(); id++) {
+			String uid = dictionary.uidOf(id);
+			users.add(new User(uid, uid, new ArrayList<User>(), null));
+		}
+		RelationLoader.load(users, edges[0], edges[1], count[0]);
+		return users;
+	}
+
+	/**
+	 * Parses the lines starting in [start, end) of the file. A line belongs to
+	 * the split it starts in, so a split reads past its end to finish its last
+	 * line and skips the partial line it starts in.
+	 */
+	private final class SplitParser {
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+		private final UidDictionary local;
+		private final UidDictionary shared;
+		private final EdgeSink sink;
+
+		private final int[] from = new int[chunkSize];
+		private final int[] to = new int[chunkSize];
+		private int count;
+		// shared id of every local id, when the split has its own dictionary
+		private int[] sharedIds = new int[0];
+
+		SplitParser(FileChannel channel, long start, long end, UidDictionary local, UidDictionary shared,
+				EdgeSink sink) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.local = local;
+			this.shared = shared;
+			this.sink = sink;
+		}
+
+		void run() throws IOException {
+			byte[] buf = new byte[bufferSize];
+			// start one byte early so a line starting right at start is kept
+			long bufPos = start == 0 ? 0 : start - 1;
+			int len = 0;
+			int pos = 0;
+			int scan = 0;
+			boolean skipping = start != 0;
+			boolean eof = false;
+			while (true) {
+				int newline = -1;
+				for (int i = scan; i < len; i++) {
+					if (buf[i] == '\n') {
+						newline = i;
+						break;
+					}
+				}
+				if (newline >= 0 || (eof && pos < len)) {
+					int lineEnd = newline >= 0 ? newline : len;
+					long lineStart = bufPos + pos;
+					if (skipping) {
+						skipping = false;
+					} else {
+						if (lineStart >= end)
+							break;
+						if (!(header && lineStart == 0))
+							parseLine(buf, pos, lineEnd, lineStart);
+					}
+					pos = lineEnd + 1;
+					scan = pos;
+					continue;
+				}
+				if (eof)
+					break;
+				// keep the partial line, and read more behind it
+				if (pos > 0) {
+					System.arraycopy(buf, pos, buf, 0, len - pos);
+					bufPos += pos;
+					len -= pos;
+					pos = 0;
+				}
+				scan = len;
+				if (len == buf.length)
+					buf = Arrays.copyOf(buf, buf.length * 2);
+				int read = channel.read(ByteBuffer.wrap(buf, len, buf.length - len), bufPos + len);
+				if (read < 0)
+					eof = true;
+				else
+					len += read;
+			}
+			flush();
+		}
+
+		private void parseLine(byte[] buf, int off, int lineEnd, long lineStart) throws IOException {
+			if (lineEnd > off && buf[lineEnd - 1] == '\r')
+				lineEnd--;
+			if (lineEnd == off)
+				return;
+			int first = indexOf(buf, off, lineEnd);
+			if (first < 0) {
+				throw new IOException("Expected two fields in the line at byte " + lineStart);
+			}
+			int secondEnd = indexOf(buf, first + 1, lineEnd);
+			if (secondEnd < 0)
+				secondEnd = lineEnd;
+			from[count] = intern(buf, off, first, lineStart);
+			to[count] = intern(buf, first + 1, secondEnd, lineStart);
+			if (++count == chunkSize)
+				flush();
+		}
+
+		private int indexOf(byte[] buf, int off, int lineEnd) {
+			for (int i = off; i < lineEnd; i++) {
+				if (buf[i] == delimiter)
+					return i;
+			}
+			return -1;
+		}
+
+		private int intern(byte[] buf, int off, int fieldEnd, long lineStart) throws IOException {
+			if (fieldEnd - off >= 2 && buf[off] == '"' && buf[fieldEnd - 1] == '"') {
+				off++;
+				fieldEnd--;
+			}
+			if (fieldEnd == off) {
+				throw new IOException("Empty id in the line at byte " + lineStart);
+			}
+			return local.intern(buf, off, fieldEnd - off);
+		}
+
+		private void flush() {
+			if (local == shared) {
+				if (count > 0)
+					sink.accept(from, to, count);
+				count = 0;
+				return;
+			}
+			synchronized (shared) {
+				int mapped = sharedIds.length;
+				if (local.size() > mapped) {
+					sharedIds = Arrays.copyOf(sharedIds, local.size());
+					for (int id = mapped; id < local.size(); id++) {
+						sharedIds[id] = shared.internFrom(local, id);
+					}
+				}
+				for (int i = 0; i < count; i++) {
+					from[i] = sharedIds[from[i]];
+					to[i] = sharedIds[to[i]];
+				}
+				if (count > 0)
+					sink.accept(from, to, count);
+			}
+			count = 0;
+		}
+	}
+}
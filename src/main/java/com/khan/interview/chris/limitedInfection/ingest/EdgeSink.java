@@ -0,0 +1,24 @@
+package com.khan.interview.chris.limitedInfection.ingest;
+
+/**
+ * An EdgeSink receives the relations parsed by an {@link EdgeListImporter} in
+ * chunks, as pairs of dense ids handed out by a {@link UidDictionary}.
+ * <p>
+ * Calls are never concurrent, even when the file is parsed in parallel. The
+ * arrays are reused for the next chunk once the call returns.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public interface EdgeSink {
+
+	/**
+	 * @param from
+	 *            coach side of every relation in the chunk
+	 * @param to
+	 *            student side of every relation in the chunk
+	 * @param count
+	 *            number of relations in the chunk
+	 */
+	void accept(int[] from, int[] to, int count);
+}
@@ -0,0 +1,171 @@
+package com.khan.interview.chris.limitedInfection.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * UidDictionary interns user ids to dense ints, handing out 0, 1, 2, ... in
+ * the order ids are first seen.
+ * <p>
+ * Ids are interned straight from a slice of a byte buffer: the bytes are
+ * hashed and compared in place and only copied into the dictionary's arena the
+ * first time an id is seen, so parsing doesn't allocate a String per field.
+ * Lookups use an open addressing table of ints. The arena holds up to 2 GB of
+ * id bytes.
+ * </p>
+ * <p>
+ * Not thread safe.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class UidDictionary {
+
+	private byte[] arena = new byte[1 << 12];
+	// starts[id] .. starts[id + 1] are the bytes of id in the arena
+	private int[] starts = new int[257];
+	private int[] hashes = new int[256];
+	// id + 1 of every slot, 0 for an empty slot
+	private int[] table = new int[512];
+	private int size;
+
+	/**
+	 * @return number of ids interned so far
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Interns the id made of buf[off .. off + len).
+	 *
+	 * @param buf
+	 *            buffer holding the id
+	 * @param off
+	 *            start of the id in buf
+	 * @param len
+	 *            length of the id in bytes
+	 * @return dense int of the id
+	 */
+	public int intern(byte[] buf, int off, int len) {
+		int hash = hash(buf, off, len);
+		int mask = table.length - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			int entry = table[slot];
+			if (entry == 0) {
+				int id = add(buf, off, len, hash);
+				table[slot] = id + 1;
+				if (size * 2 > table.length)
+					rehash();
+				return id;
+			}
+			int id = entry - 1;
+			if (hashes[id] == hash && matches(id, buf, off, len))
+				return id;
+		}
+	}
+
+	/**
+	 * Interns the given id.
+	 *
+	 * @param uid
+	 *            the user id
+	 * @return dense int of the id
+	 */
+	public int intern(String uid) {
+		byte[] bytes = uid.getBytes(StandardCharsets.UTF_8);
+		return intern(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * @param uid
+	 *            the user id
+	 * @return dense int of the id, or -1 if it hasn't been interned
+	 */
+	public int indexOf(String uid) {
+		byte[] bytes = uid.getBytes(StandardCharsets.UTF_8);
+		int hash = hash(bytes, 0, bytes.length);
+		int mask = table.length - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			int entry = table[slot];
+			if (entry == 0)
+				return -1;
+			int id = entry - 1;
+			if (hashes[id] == hash && matches(id, bytes, 0, bytes.length))
+				return id;
+		}
+	}
+
+	/**
+	 * @param id
+	 *            dense int of an interned id
+	 * @return the user id
+	 */
+	public String uidOf(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("id " + id + " is outside of " + size + " ids");
+		}
+		return new String(arena, starts[id], starts[id + 1] - starts[id], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Interns an id of another dictionary into this one without decoding it.
+	 */
+	int internFrom(UidDictionary other, int id) {
+		return intern(other.arena, other.starts[id], other.starts[id + 1] - other.starts[id]);
+	}
+
+	private int add(byte[] buf, int off, int len, int hash) {
+		int used = starts[size];
+		if (used + len > arena.length) {
+			long grown = Math.max((long) arena.length * 2, (long) used + len);
+			if (grown > Integer.MAX_VALUE - 8) {
+				if ((long) used + len > Integer.MAX_VALUE - 8)
+					throw new IllegalStateException("UidDictionary is full");
+				grown = Integer.MAX_VALUE - 8;
+			}
+			arena = Arrays.copyOf(arena, (int) grown);
+		}
+		System.arraycopy(buf, off, arena, used, len);
+		if (size + 1 == hashes.length) {
+			hashes = Arrays.copyOf(hashes, hashes.length * 2);
+			starts = Arrays.copyOf(starts, hashes.length + 1);
+		}
+		hashes[size] = hash;
+		starts[size + 1] = used + len;
+		return size++;
+	}
+
+	private boolean matches(int id, byte[] buf, int off, int len) {
+		int start = starts[id];
+		if (starts[id + 1] - start != len)
+			return false;
+		for (int i = 0; i < len; i++) {
+			if (arena[start + i] != buf[off + i])
+				return false;
+		}
+		return true;
+	}
+
+	private void rehash() {
+		int[] grown = new int[table.length * 2];
+		int mask = grown.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (grown[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			grown[slot] = id + 1;
+		}
+		table = grown;
+	}
+
+	private static int hash(byte[] buf, int off, int len) {
+		int h = 1;
+		for (int i = off, end = off + len; i < end; i++) {
+			h = 31 * h + buf[i];
+		}
+		// spread the low bits, the table is indexed by them
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,155 @@
+package com.khan.interview.chris.limitedInfection.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Histogram counts non-negative values (latencies in nanoseconds, sizes) in
+ * log-linear buckets, the way HdrHistogram does: every power of two is split
+ * into {@link #SUB_BUCKETS} equal buckets, so any value is known to within
+ * 1/16th of itself and the whole range of a long fits in under a thousand
+ * buckets.
+ * <p>
+ * Recording is lock free and allocation free: one atomic increment on the
+ * bucket plus striped adders for the count and sum. Percentiles are read from
+ * the buckets without stopping writers, so they may be slightly behind.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class Histogram {
+
+	/**
+	 * Number of buckets every power of two is split into.
+	 */
+	public static final int SUB_BUCKETS = 16;
+
+	private static final int SUB_BITS = 4;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(new LongBinaryOperator() {
+		@Override
+		public long applyAsLong(long left, long right) {
+			return Math.max(left, right);
+		}
+	}, 0);
+
+	/**
+	 * @param value
+	 *            the value to count, negative values are counted as 0
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * @return number of values recorded
+	 */
+	public long count() {
+		return count.sum();
+	}
+
+	/**
+	 * @return sum of the values recorded
+	 */
+	public long sum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return largest value recorded, 0 if none
+	 */
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * @return mean of the values recorded, 0 if none
+	 */
+	public double mean() {
+		long n = count();
+		return n == 0 ? 0 : (double) sum() / n;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return a value at least as large as the given percentage of the values
+	 *         recorded, within 1/16th of it; 0 if none
+	 */
+	public long valueAt(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(highestOf(i), max());
+		}
+		return max();
+	}
+
+	/**
+	 * @return the count, mean and usual percentiles at this point
+	 */
+	public HistogramSnapshot snapshot() {
+		return new HistogramSnapshot(count(), mean(), valueAt(50), valueAt(90), valueAt(99), valueAt(99.9), max());
+	}
+
+	/**
+	 * Forgets every value recorded. Values recorded concurrently may be lost
+	 * or kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @return the largest value counted in the bucket
+	 */
+	static long highestOf(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,81 @@
+package com.khan.interview.chris.limitedInfection.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * HistogramSnapshot is the summary of a {@link Histogram} at one point in
+ * time. Exposed over JMX as composite data.
+ *
+ * @author Christopher Chen
+ */
+public final class HistogramSnapshot {
+
+	private final long count;
+	private final double mean;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+	private final long max;
+
+	/**
+	 * @param count
+	 *            number of values recorded
+	 * @param mean
+	 *            mean of the values
+	 * @param p50
+	 *            median
+	 * @param p90
+	 *            90th percentile
+	 * @param p99
+	 *            99th percentile
+	 * @param p999
+	 *            99.9th percentile
+	 * @param max
+	 *            largest value
+	 */
+	@ConstructorProperties({ "count", "mean", "p50", "p90", "p99", "p999", "max" })
+	public HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "[count=" + count + ", mean=" + String.format("%.1f", mean) + ", p50=" + p50 + ", p90=" + p90 + ", p99="
+				+ p99 + ", p999=" + p999 + ", max=" + max + "]";
+	}
+}
@@ -0,0 +1,272 @@
+package com.khan.interview.chris.limitedInfection.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * InfectionMetrics collects counters and histograms about infections: how
+ * long they take, how many users and relations the traversals touch, how
+ * large the infected components are, how much the calling thread allocates,
+ * and how long deployment batches take to write.
+ * <p>
+ * Metrics are only collected by the controllers and pipelines they are set on;
+ * without them, the hot paths skip even reading the clock. Recording is lock
+ * free, so one instance can be shared by every thread. Metrics can be read
+ * over JMX once {@link #register(String) registered}, or pushed periodically
+ * to a {@link MetricsReporter} with a {@link ScheduledReporter}.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class InfectionMetrics implements InfectionMetricsMXBean {
+
+	/**
+	 * JMX domain the metrics are registered under.
+	 */
+	public static final String DOMAIN = "com.khan.interview.chris.limitedInfection";
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final LongAdder totalInfections = new LongAdder();
+	private final LongAdder limitedInfections = new LongAdder();
+	private final LongAdder failedLimitedInfections = new LongAdder();
+	private final LongAdder usersInfected = new LongAdder();
+	private final LongAdder usersVisited = new LongAdder();
+	private final LongAdder edgesVisited = new LongAdder();
+	private final LongAdder deployBatches = new LongAdder();
+	private final LongAdder usersDeployed = new LongAdder();
+	private final Histogram totalInfectionTime = new Histogram();
+	private final Histogram limitedInfectionTime = new Histogram();
+	private final Histogram traversalTime = new Histogram();
+	private final Histogram visitedUsers = new Histogram();
+	private final Histogram componentSizes = new Histogram();
+	private final Histogram allocatedBytes = new Histogram();
+	private final Histogram deployBatchTime = new Histogram();
+
+	/**
+	 * @return bytes allocated so far by the calling thread, or -1 if the JVM
+	 *         doesn't measure it
+	 */
+	public static long threadAllocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemoryEnabled())
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * @param nanos
+	 *            time the total infection took
+	 * @param infected
+	 *            number of users infected
+	 */
+	public void recordTotalInfection(long nanos, int infected) {
+		totalInfections.increment();
+		usersInfected.add(infected);
+		totalInfectionTime.record(nanos);
+	}
+
+	/**
+	 * @param nanos
+	 *            time the limited infection took
+	 * @param infected
+	 *            number of users infected
+	 */
+	public void recordLimitedInfection(long nanos, int infected) {
+		limitedInfections.increment();
+		usersInfected.add(infected);
+		limitedInfectionTime.record(nanos);
+	}
+
+	/**
+	 * @param nanos
+	 *            time until the limited infection failed
+	 */
+	public void recordFailedLimitedInfection(long nanos) {
+		limitedInfections.increment();
+		failedLimitedInfections.increment();
+		limitedInfectionTime.record(nanos);
+	}
+
+	/**
+	 * @param nanos
+	 *            time the traversal took
+	 * @param users
+	 *            number of users visited
+	 * @param edges
+	 *            number of relations followed
+	 */
+	public void recordTraversal(long nanos, int users, long edges) {
+		traversalTime.record(nanos);
+		visitedUsers.record(users);
+		usersVisited.add(users);
+		edgesVisited.add(edges);
+	}
+
+	/**
+	 * @param size
+	 *            number of users of a component infected as a whole
+	 */
+	public void recordComponent(int size) {
+		componentSizes.record(size);
+	}
+
+	/**
+	 * @param before
+	 *            {@link #threadAllocatedBytes()} at the start of the operation
+	 */
+	public void recordAllocationSince(long before) {
+		if (before < 0)
+			return;
+		long after = threadAllocatedBytes();
+		if (after >= before)
+			allocatedBytes.record(after - before);
+	}
+
+	/**
+	 * @param nanos
+	 *            time the batch took to write
+	 * @param users
+	 *            number of users in the batch
+	 */
+	public void recordDeployBatch(long nanos, int users) {
+		deployBatches.increment();
+		usersDeployed.add(users);
+		deployBatchTime.record(nanos);
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server as
+	 * <code>{@value #DOMAIN}:type=InfectionMetrics,name=&lt;name&gt;</code>.
+	 *
+	 * @param name
+	 *            tells apart the metrics of several controllers
+	 * @return the name the metrics were registered under
+	 * @throws JMException
+	 *             if the name is taken or invalid
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName(DOMAIN + ":type=InfectionMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * @param objectName
+	 *            name returned by {@link #register(String)}
+	 * @throws JMException
+	 *             if nothing is registered under the name
+	 */
+	public static void unregister(ObjectName objectName) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.unregisterMBean(objectName);
+	}
+
+	@Override
+	public long getTotalInfections() {
+		return totalInfections.sum();
+	}
+
+	@Override
+	public long getLimitedInfections() {
+		return limitedInfections.sum();
+	}
+
+	@Override
+	public long getFailedLimitedInfections() {
+		return failedLimitedInfections.sum();
+	}
+
+	@Override
+	public long getUsersInfected() {
+		return usersInfected.sum();
+	}
+
+	@Override
+	public long getUsersVisited() {
+		return usersVisited.sum();
+	}
+
+	@Override
+	public long getEdgesVisited() {
+		return edgesVisited.sum();
+	}
+
+	@Override
+	public long getDeployBatches() {
+		return deployBatches.sum();
+	}
+
+	@Override
+	public long getUsersDeployed() {
+		return usersDeployed.sum();
+	}
+
+	@Override
+	public HistogramSnapshot getTotalInfectionTime() {
+		return totalInfectionTime.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getLimitedInfectionTime() {
+		return limitedInfectionTime.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getTraversalTime() {
+		return traversalTime.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getVisitedUsers() {
+		return visitedUsers.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getComponentSizes() {
+		return componentSizes.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getAllocatedBytes() {
+		return allocatedBytes.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getDeployBatchTime() {
+		return deployBatchTime.snapshot();
+	}
+
+	@Override
+	public void reset() {
+		LongAdder[] counters = { totalInfections, limitedInfections, failedLimitedInfections, usersInfected,
+				usersVisited, edgesVisited, deployBatches, usersDeployed };
+		for (LongAdder counter : counters) {
+			counter.reset();
+		}
+		Histogram[] histograms = { totalInfectionTime, limitedInfectionTime, traversalTime, visitedUsers,
+				componentSizes, allocatedBytes, deployBatchTime };
+		for (Histogram histogram : histograms) {
+			histogram.reset();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "InfectionMetrics [totalInfections=" + getTotalInfections() + ", limitedInfections="
+				+ getLimitedInfections() + ", failedLimitedInfections=" + getFailedLimitedInfections()
+				+ ", usersInfected=" + getUsersInfected() + ", usersVisited=" + getUsersVisited() + ", edgesVisited="
+				+ getEdgesVisited() + ", deployBatches=" + getDeployBatches() + ", usersDeployed="
+				+ getUsersDeployed() + ", totalInfectionTime=" + totalInfectionTime + ", limitedInfectionTime="
+				+ limitedInfectionTime + ", traversalTime=" + traversalTime + ", visitedUsers=" + visitedUsers
+				+ ", componentSizes=" + componentSizes + ", allocatedBytes=" + allocatedBytes + ", deployBatchTime="
+				+ deployBatchTime + "]";
+	}
+}
@@ -0,0 +1,45 @@
+package com.khan.interview.chris.limitedInfection.metrics;
+
+/**
+ * Management interface of {@link InfectionMetrics}, for JConsole and other JMX
+ * clients. Times are in nanoseconds.
+ *
+ * @author Christopher Chen
+ */
+public interface InfectionMetricsMXBean {
+
+	long getTotalInfections();
+
+	long getLimitedInfections();
+
+	long getFailedLimitedInfections();
+
+	long getUsersInfected();
+
+	long getUsersVisited();
+
+	long getEdgesVisited();
+
+	long getDeployBatches();
+
+	long getUsersDeployed();
+
+	HistogramSnapshot getTotalInfectionTime();
+
+	HistogramSnapshot getLimitedInfectionTime();
+
+	HistogramSnapshot getTraversalTime();
+
+	HistogramSnapshot getVisitedUsers();
+
+	HistogramSnapshot getComponentSizes();
+
+	HistogramSnapshot getAllocatedBytes();
+
+	HistogramSnapshot getDeployBatchTime();
+
+	/**
+	 * Starts every counter and histogram over.
+	 */
+	void reset();
+}
@@ -0,0 +1,19 @@
+package com.khan.interview.chris.limitedInfection.metrics;
+
+/**
+ * A MetricsReporter ships {@link InfectionMetrics} somewhere else, e.g. a log
+ * or a monitoring system. Run periodically by a {@link ScheduledReporter}.
+ *
+ * @author Christopher Chen
+ */
+public interface MetricsReporter {
+
+	/**
+	 * Called from the reporting thread. Metrics keep being recorded while they
+	 * are read.
+	 *
+	 * @param metrics
+	 *            the metrics to report
+	 */
+	void report(InfectionMetrics metrics);
+}
@@ -0,0 +1,91 @@
+package com.khan.interview.chris.limitedInfection.metrics;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ScheduledReporter hands {@link InfectionMetrics} to a
+ * {@link MetricsReporter} at a fixed rate on its own daemon thread, until
+ * closed. A reporter that throws is still called on the next period; what it
+ * threw goes to the error handler, by default the uncaught exception handler
+ * of the reporting thread.
+ *
+ * @author Christopher Chen
+ */
+public final class ScheduledReporter implements Closeable {
+
+	private final ScheduledExecutorService scheduler;
+	private volatile Thread.UncaughtExceptionHandler errorHandler;
+
+	/**
+	 * Starts reporting, the first time after one period.
+	 *
+	 * @param metrics
+	 *            the metrics to report
+	 * @param reporter
+	 *            where to report them
+	 * @param period
+	 *            time between reports
+	 * @param unit
+	 *            unit of period
+	 */
+	public ScheduledReporter(final InfectionMetrics metrics, final MetricsReporter reporter, long period,
+			TimeUnit unit) {
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "infection-metrics-reporter");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					reporter.report(metrics);
+				} catch (RuntimeException e) {
+					// a failed report must not cancel the following ones
+					Thread thread = Thread.currentThread();
+					Thread.UncaughtExceptionHandler handler = errorHandler;
+					(handler != null ? handler : thread.getUncaughtExceptionHandler()).uncaughtException(thread, e);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * @param errorHandler
+	 *            receives what failed reports throw, or null for the uncaught
+	 *            exception handler of the reporting thread
+	 */
+	public void setErrorHandler(Thread.UncaughtExceptionHandler errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * @param out
+	 *            stream to print to, e.g. System.out
+	 * @return a reporter printing the metrics as one line per report
+	 */
+	public static MetricsReporter printingTo(final PrintStream out) {
+		return new MetricsReporter() {
+			@Override
+			public void report(InfectionMetrics metrics) {
+				out.println(metrics);
+			}
+		};
+	}
+
+	/**
+	 * Stops reporting. A report already running is allowed to finish.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdown();
+	}
+}
@@ -0,0 +1,245 @@
+package com.khan.interview.chris.limitedInfection.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FeatureRegistry interns features and versions to small integer ids, so hot
+ * paths compare ints instead of names and lists of version strings.
+ * <p>
+ * Features are identified by name; registering another KhanSiteFeature with
+ * the same name returns the id of the first one and makes the new instance
+ * the canonical one, with its supported and current versions. Versions are
+ * identified by their string and numbered from 0 up to {@link #MAX_VERSIONS},
+ * so the versions a feature supports fit in a single <code>long</code>
+ * bitmask and checking compatibility is a shift and a mask.
+ * </p>
+ * <p>
+ * A release is a feature at one current version. Every release registered
+ * keeps an id of its own, even once a later version replaces it, so records
+ * that need to tell a version bump of a feature apart from the feature
+ * itself, such as a deployment journal, can keep the exact instance users
+ * held.
+ * </p>
+ * <p>
+ * Not thread safe: register features and versions up front, after which
+ * lookups, which never intern, may be shared between threads.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class FeatureRegistry {
+
+	/**
+	 * Number of distinct versions a registry can hold, the width of a mask.
+	 */
+	public static final int MAX_VERSIONS = 64;
+
+	/**
+	 * Version id of users whose version is unknown.
+	 */
+	public static final int NO_VERSION = -1;
+
+	private final Map<String, Integer> featureIds = new HashMap<String, Integer>();
+	private final List<KhanSiteFeature> features = new ArrayList<KhanSiteFeature>();
+	private long[] supported = new long[8];
+	private int[] current = new int[8];
+	private final Map<String, Integer> versionIds = new HashMap<String, Integer>();
+	private final List<String> versions = new ArrayList<String>();
+	private final Map<List<String>, Integer> releaseIds = new HashMap<List<String>, Integer>();
+	private final List<KhanSiteFeature> releases = new ArrayList<KhanSiteFeature>();
+
+	/**
+	 * Interns the feature and its versions. Nothing is registered if the
+	 * versions don't fit.
+	 *
+	 * @param feature
+	 *            the feature to register
+	 * @return id of the feature
+	 * @throws IllegalStateException
+	 *             if the feature brings the number of versions above
+	 *             {@link #MAX_VERSIONS}
+	 */
+	public int register(KhanSiteFeature feature) {
+		Set<String> added = new HashSet<String>();
+		if (feature.getSupportedVersions() != null) {
+			for (String version : feature.getSupportedVersions()) {
+				if (!versionIds.containsKey(version))
+					added.add(version);
+			}
+		}
+		if (feature.getCurrentVersion() != null && !versionIds.containsKey(feature.getCurrentVersion()))
+			added.add(feature.getCurrentVersion());
+		if (versions.size() + added.size() > MAX_VERSIONS) {
+			throw new IllegalStateException("A registry holds at most " + MAX_VERSIONS + " versions");
+		}
+		long mask = 0;
+		if (feature.getSupportedVersions() != null) {
+			for (String version : feature.getSupportedVersions()) {
+				mask |= 1L << versionId(version);
+			}
+		}
+		int currentId = feature.getCurrentVersion() == null ? NO_VERSION : versionId(feature.getCurrentVersion());
+
+		Integer known = featureIds.get(feature.getName());
+		int id;
+		if (known != null) {
+			id = known;
+			features.set(id, feature);
+		} else {
+			id = features.size();
+			featureIds.put(feature.getName(), id);
+			features.add(feature);
+			if (id == supported.length) {
+				supported = Arrays.copyOf(supported, id * 2);
+				current = Arrays.copyOf(current, id * 2);
+			}
+		}
+		supported[id] = mask;
+		current[id] = currentId;
+		Integer release = releaseIds.get(releaseKey(feature));
+		if (release != null) {
+			releases.set(release, feature);
+		} else {
+			releaseIds.put(releaseKey(feature), releases.size());
+			releases.add(feature);
+		}
+		return id;
+	}
+
+	/**
+	 * @param feature
+	 *            a feature
+	 * @return id of the release of the feature, its name and current version,
+	 *         or -1 if no feature of that name and version was registered
+	 */
+	public int releaseId(KhanSiteFeature feature) {
+		Integer id = releaseIds.get(releaseKey(feature));
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id
+	 *            release id
+	 * @return the instance representing the release, the last one registered
+	 */
+	public KhanSiteFeature release(int id) {
+		return releases.get(id);
+	}
+
+	/**
+	 * Interns a version string.
+	 *
+	 * @param version
+	 *            the version
+	 * @return id of the version, below {@link #MAX_VERSIONS}
+	 * @throws IllegalStateException
+	 *             if the version is new and the registry is full
+	 */
+	public int versionId(String version) {
+		Integer known = versionIds.get(version);
+		if (known != null)
+			return known;
+		if (versions.size() == MAX_VERSIONS) {
+			throw new IllegalStateException("A registry holds at most " + MAX_VERSIONS + " versions");
+		}
+		int id = versions.size();
+		versionIds.put(version, id);
+		versions.add(version);
+		return id;
+	}
+
+	/**
+	 * @param name
+	 *            name of a feature
+	 * @return id of the feature, or -1 if it isn't registered
+	 */
+	public int featureId(String name) {
+		Integer id = featureIds.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id
+	 *            feature id
+	 * @return the canonical instance of the feature, the last one registered
+	 */
+	public KhanSiteFeature feature(int id) {
+		return features.get(id);
+	}
+
+	/**
+	 * @param id
+	 *            version id
+	 * @return the version string
+	 */
+	public String version(int id) {
+		return versions.get(id);
+	}
+
+	/**
+	 * @return number of features registered
+	 */
+	public int featureCount() {
+		return features.size();
+	}
+
+	/**
+	 * @return number of versions interned
+	 */
+	public int versionCount() {
+		return versions.size();
+	}
+
+	/**
+	 * @param featureId
+	 *            feature id
+	 * @return the versions the feature supports, bit i set for version id i
+	 */
+	public long supportedMask(int featureId) {
+		checkFeature(featureId);
+		return supported[featureId];
+	}
+
+	/**
+	 * @param featureId
+	 *            feature id
+	 * @return id of the feature's current version, or {@link #NO_VERSION}
+	 */
+	public int currentVersion(int featureId) {
+		checkFeature(featureId);
+		return current[featureId];
+	}
+
+	/**
+	 * @param featureId
+	 *            feature id
+	 * @param versionId
+	 *            version id, or {@link #NO_VERSION}
+	 * @return true if the feature supports the version; an unknown version is
+	 *         never supported
+	 */
+	public boolean supports(int featureId, int versionId) {
+		return versionId >= 0 && (supportedMask(featureId) >>> versionId & 1) != 0;
+	}
+
+	@Override
+	public String toString() {
+		return "FeatureRegistry [features=" + features.size() + ", versions=" + versions + "]";
+	}
+
+	private static List<String> releaseKey(KhanSiteFeature feature) {
+		return Arrays.asList(feature.getName(), feature.getCurrentVersion());
+	}
+
+	private void checkFeature(int featureId) {
+		if (featureId < 0 || featureId >= features.size()) {
+			throw new IllegalArgumentException("No feature with id " + featureId);
+		}
+	}
+}
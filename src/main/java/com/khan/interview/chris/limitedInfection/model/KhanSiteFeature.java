@@ -70,6 +70,16 @@ public class KhanSiteFeature {
 		this.currentVersion = currentVersion;
 	}
 
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((currentVersion == null) ? 0 : currentVersion.hashCode());
+		result = prime * result + ((name == null) ? 0 : name.hashCode());
+		result = prime * result + ((supportedVersions == null) ? 0 : supportedVersions.hashCode());
+		return result;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -0,0 +1,98 @@
+package com.khan.interview.chris.limitedInfection.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RelationLoader adds many coach/student relations to a list of users at once.
+ * <p>
+ * Relations are given as pairs of positions in the user list. They are packed
+ * into longs, sorted and deduplicated up front, so every relation is added to
+ * both users in one pass without the per-relation lookups of
+ * {@link User#addRelatedUser(User)}. Relations a user already has are only
+ * checked for users that had relations before the load.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class RelationLoader {
+
+	private RelationLoader() {
+		// static helpers only
+	}
+
+	/**
+	 * Relates users.get(from[i]) and users.get(to[i]) for every i. Duplicate
+	 * pairs (in either direction) and self relations are ignored.
+	 *
+	 * @param users
+	 *            the users the pairs refer to
+	 * @param from
+	 *            one side of every relation, as positions in users
+	 * @param to
+	 *            the other side of every relation, as positions in users
+	 * @return number of relations added
+	 */
+	public static int load(List<User> users, int[] from, int[] to) {
+		return load(users, from, to, from.length);
+	}
+
+	/**
+	 * Relates the first count pairs of from and to, see
+	 * {@link #load(List, int[], int[])}.
+	 */
+	public static int load(List<User> users, int[] from, int[] to, int count) {
+		if (from.length < count || to.length < count) {
+			throw new IllegalArgumentException("from and to must hold count relations");
+		}
+		int n = users.size();
+		// smaller position in the high half so both directions pack the same
+		long[] pairs = new long[count];
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			int a = from[i];
+			int b = to[i];
+			if (a < 0 || b < 0 || a >= n || b >= n) {
+				throw new IndexOutOfBoundsException("relation " + a + "-" + b + " is outside of " + n + " users");
+			}
+			if (a == b)
+				continue;
+			pairs[size++] = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+		}
+		Arrays.sort(pairs, 0, size);
+
+		// drop duplicates, and relations that already exist, counting how many
+		// relations every user gains
+		User[] byPosition = users.toArray(new User[n]);
+		boolean[] hadRelations = new boolean[n];
+		for (int v = 0; v < n; v++) {
+			List<User> related = byPosition[v].getRelatedUsers();
+			hadRelations[v] = related != null && !related.isEmpty();
+		}
+		int[] gained = new int[n];
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (unique > 0 && pairs[unique - 1] == pairs[i])
+				continue;
+			int a = (int) (pairs[i] >>> 32);
+			int b = (int) pairs[i];
+			if (hadRelations[a] && hadRelations[b] && byPosition[a].hasRelatedUser(byPosition[b]))
+				continue;
+			pairs[unique++] = pairs[i];
+			gained[a]++;
+			gained[b]++;
+		}
+
+		for (int v = 0; v < n; v++) {
+			if (gained[v] > 0)
+				byPosition[v].reserveRelatedUsers(gained[v]);
+		}
+		for (int i = 0; i < unique; i++) {
+			User a = byPosition[(int) (pairs[i] >>> 32)];
+			User b = byPosition[(int) pairs[i]];
+			a.appendRelatedUser(b);
+			b.appendRelatedUser(a);
+		}
+		return unique;
+	}
+}
@@ -1,8 +1,11 @@
 package com.khan.interview.chris.limitedInfection.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * User is the class that represents a typical Khan Academy user. This class
@@ -23,11 +26,24 @@ import java.util.Objects;
  */
 public class User {
 
+	/**
+	 * Number of related users above which lookups in relatedUsers go through a
+	 * hash set instead of scanning the list.
+	 */
+	static final int RELATED_INDEX_THRESHOLD = 16;
+
 	private String UID;
 	private String username;
 	// list of directly adjacent users (both students and coaches)
 	private List<User> relatedUsers = new ArrayList<User>();
+	// read-only view of relatedUsers handed out by getRelatedUsers
+	private List<User> relatedView = Collections.unmodifiableList(relatedUsers);
+	// set of relatedUsers for high degree users, null until needed; kept in
+	// step by every method changing relatedUsers
+	private Set<User> relatedIndex;
 	private KhanSiteFeature currentFeature;
+	// hash of UID and username, kept in step by the setters
+	private int hash;
 
 	/**
 	 * default empty constructor
@@ -45,15 +61,17 @@ public class User {
 	 * @param name
 	 *            : new user's username
 	 * @param adjUsers
-	 *            : new user's directly related users (coaches + students)
+	 *            : new user's directly related users (coaches + students),
+	 *            copied
 	 * @param feature
 	 *            : new user's set feature
 	 */
 	public User(String id, String name, List<User> adjUsers, KhanSiteFeature feature) {
 		this.UID = id;
 		this.username = name;
-		this.relatedUsers = adjUsers;
+		setRelatedList(adjUsers == null ? null : new ArrayList<User>(adjUsers));
 		this.currentFeature = feature;
+		rehash();
 	}
 
 	/**
@@ -69,6 +87,7 @@ public class User {
 	 */
 	public void setUID(String newID) {
 		this.UID = newID;
+		renamed();
 	}
 
 	/**
@@ -84,13 +103,15 @@ public class User {
 	 */
 	public void setUsername(String newUsername) {
 		this.username = newUsername;
+		renamed();
 	}
 
 	/**
-	 * @return relatedUsers
+	 * @return relatedUsers, read only: change relations with
+	 *         {@link #addRelatedUser(User)} and {@link #removeRelatedUser(User)}
 	 */
 	public List<User> getRelatedUsers() {
-		return relatedUsers;
+		return relatedView;
 	}
 
 	/**
@@ -102,13 +123,71 @@ public class User {
 	 *            the new user to add to relatedUsers
 	 */
 	public void addRelatedUser(User aUser) {
-		if (!relatedUsers.contains(aUser)) {
-			relatedUsers.add(aUser);
+		if (!hasRelatedUser(aUser)) {
+			appendRelatedUser(aUser);
 			// other side of relation
 			aUser.addRelatedUser(this);
 		}
 	}
 
+	/**
+	 * Checks whether aUser is directly related to this user. Users with many
+	 * relations answer from a hash set rather than scanning relatedUsers.
+	 * 
+	 * @param aUser
+	 *            the user to look for
+	 * @return true if aUser is in relatedUsers
+	 */
+	public boolean hasRelatedUser(User aUser) {
+		if (relatedUsers == null)
+			return false;
+		if (relatedUsers.size() <= RELATED_INDEX_THRESHOLD)
+			return relatedUsers.contains(aUser);
+		if (relatedIndex == null)
+			relatedIndex = new HashSet<User>(relatedUsers);
+		return relatedIndex.contains(aUser);
+	}
+
+	/**
+	 * Adds aUser to relatedUsers on this side only, without checking for an
+	 * existing relation. Used by {@link RelationLoader} which dedupes
+	 * relations up front.
+	 */
+	void appendRelatedUser(User aUser) {
+		if (relatedUsers == null)
+			setRelatedList(new ArrayList<User>());
+		relatedUsers.add(aUser);
+		if (relatedIndex != null)
+			relatedIndex.add(aUser);
+	}
+
+	/**
+	 * Makes room for the given number of additional related users.
+	 */
+	void reserveRelatedUsers(int additional) {
+		if (relatedUsers == null)
+			setRelatedList(new ArrayList<User>(additional));
+		else if (relatedUsers instanceof ArrayList)
+			((ArrayList<User>) relatedUsers).ensureCapacity(relatedUsers.size() + additional);
+	}
+
+	/**
+	 * If the relatedUsers list contains aUser, remove aUser from relatedUsers,
+	 * and remove in the other direction as well.
+	 *
+	 * @param aUser
+	 *            the user to remove from relatedUsers
+	 */
+	public void removeRelatedUser(User aUser) {
+		if (relatedUsers != null && relatedUsers.remove(aUser)) {
+			// the list given to the constructor may hold a user twice
+			if (relatedIndex != null && !relatedUsers.contains(aUser))
+				relatedIndex.remove(aUser);
+			// other side of relation
+			aUser.removeRelatedUser(this);
+		}
+	}
+
 	/**
 	 * @return currentFeature
 	 */
@@ -130,9 +209,37 @@ public class User {
 				+ ", currentFeature=" + currentFeature + "]";
 	}
 
+	/**
+	 * Hashes only the fields compared by equals, so the hash stays the same when
+	 * a feature is deployed and users can be kept in hash based collections
+	 * across rollouts. The hash is computed when UID or username is set.
+	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(currentFeature, UID, username);
+		return hash;
+	}
+
+	private void setRelatedList(List<User> related) {
+		relatedUsers = related;
+		relatedView = related == null ? null : Collections.unmodifiableList(related);
+		relatedIndex = null;
+	}
+
+	private void rehash() {
+		hash = 31 * Objects.hashCode(UID) + Objects.hashCode(username);
+	}
+
+	/**
+	 * Rehashes and drops the relation index of every related user, which holds
+	 * this user under its old hash; they are rebuilt when next needed.
+	 */
+	private void renamed() {
+		rehash();
+		if (relatedUsers != null) {
+			for (User u : relatedUsers) {
+				u.relatedIndex = null;
+			}
+		}
 	}
 
 	@Override
@@ -144,6 +251,8 @@ public class User {
 		if (getClass() != obj.getClass())
 			return false;
 		User other = (User) obj;
+		if (hash != other.hash)
+			return false;
 		if (UID == null) {
 			if (other.UID != null)
 				return false;
@@ -0,0 +1,169 @@
+package com.khan.interview.chris.limitedInfection.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.khan.interview.chris.limitedInfection.graph.ComponentIndex;
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * CohortAllocator plans many experiments at once: given a target size for
+ * every feature, it hands each feature a set of whole total infections
+ * (components) with no component given to two features, so the experiments'
+ * cohorts never overlap.
+ * <p>
+ * The allocation is a bin packing with the features as bins, done best fit
+ * decreasing in a single pass over the component sizes: from the largest
+ * component down, every component goes to the feature with the least room
+ * left that it still fits in. The features' room is kept in a sorted set, so
+ * the pass costs <code>O(c log c + c log f)</code> for c components and f
+ * features, rather than one sweep of the graph per feature.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class CohortAllocator {
+
+	/**
+	 * The components allocated to one feature.
+	 */
+	public static final class Allocation {
+		private final KhanSiteFeature feature;
+		private final int target;
+		private final ComponentIndex index;
+		private final BitSet components = new BitSet();
+		private long size;
+
+		Allocation(KhanSiteFeature feature, int target, ComponentIndex index) {
+			this.feature = feature;
+			this.target = target;
+			this.index = index;
+		}
+
+		public KhanSiteFeature getFeature() {
+			return feature;
+		}
+
+		/**
+		 * @return the size asked for
+		 */
+		public int getTarget() {
+			return target;
+		}
+
+		/**
+		 * @return number of users allocated, at most the target
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return ids of the allocated components
+		 */
+		public BitSet components() {
+			return (BitSet) components.clone();
+		}
+
+		/**
+		 * @return the allocated users
+		 */
+		public List<User> users() {
+			List<User> users = new ArrayList<User>();
+			for (int c = components.nextSetBit(0); c >= 0; c = components.nextSetBit(c + 1)) {
+				users.addAll(index.members(c));
+			}
+			return users;
+		}
+
+		@Override
+		public String toString() {
+			return "Allocation [feature=" + feature.getName() + ", target=" + target + ", size=" + size + "]";
+		}
+	}
+
+	private final ComponentIndex index;
+	private final Map<KhanSiteFeature, Integer> targets = new LinkedHashMap<KhanSiteFeature, Integer>();
+
+	/**
+	 * @param index
+	 *            the components to allocate
+	 */
+	public CohortAllocator(ComponentIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * @param feature
+	 *            feature to allocate a cohort to
+	 * @param size
+	 *            cap on the number of users of its cohort
+	 * @throws IllegalArgumentException
+	 *             if the size is negative or the feature already has a target
+	 */
+	public void addTarget(KhanSiteFeature feature, int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("size must not be negative");
+		}
+		if (targets.containsKey(feature)) {
+			throw new IllegalArgumentException("Feature already has a target: " + feature.getName());
+		}
+		targets.put(feature, size);
+	}
+
+	/**
+	 * Allocates disjoint cohorts to every feature with a target.
+	 *
+	 * @param candidates
+	 *            ids of the components that may be allocated
+	 * @return the allocation of every feature, in the order the targets were
+	 *         added
+	 */
+	public Map<KhanSiteFeature, Allocation> allocate(BitSet candidates) {
+		List<Allocation> allocations = new ArrayList<Allocation>(targets.size());
+		// room left of every feature, packed as room << 32 | feature position
+		TreeSet<Long> rooms = new TreeSet<Long>();
+		for (Map.Entry<KhanSiteFeature, Integer> target : targets.entrySet()) {
+			if (target.getValue() > 0)
+				rooms.add(((long) target.getValue() << 32) | allocations.size());
+			allocations.add(new Allocation(target.getKey(), target.getValue(), index));
+		}
+
+		long[] bySize = new long[candidates.cardinality()];
+		int count = 0;
+		for (int c = candidates.nextSetBit(0); c >= 0; c = candidates.nextSetBit(c + 1)) {
+			bySize[count++] = ((long) index.componentSize(c) << 32) | c;
+		}
+		Arrays.sort(bySize);
+		for (int i = count - 1; i >= 0 && !rooms.isEmpty(); i--) {
+			int size = (int) (bySize[i] >>> 32);
+			if (size == 0)
+				break;
+			// the feature with the least room that still fits the component
+			Long fit = rooms.ceiling((long) size << 32);
+			if (fit == null)
+				continue;
+			rooms.remove(fit);
+			long room = (fit >>> 32) - size;
+			int feature = (int) (long) fit;
+			Allocation allocation = allocations.get(feature);
+			allocation.components.set((int) bySize[i]);
+			allocation.size += size;
+			if (room > 0)
+				rooms.add((room << 32) | feature);
+		}
+
+		Map<KhanSiteFeature, Allocation> result = new LinkedHashMap<KhanSiteFeature, Allocation>();
+		for (Allocation allocation : allocations) {
+			result.put(allocation.getFeature(), allocation);
+		}
+		return Collections.unmodifiableMap(result);
+	}
+}
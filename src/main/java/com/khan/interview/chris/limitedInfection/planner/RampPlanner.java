@@ -0,0 +1,172 @@
+package com.khan.interview.chris.limitedInfection.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.khan.interview.chris.limitedInfection.graph.ComponentIndex;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * RampPlanner plans a staged rollout (e.g. 1%, 5%, 25%, 50%, 100%) as nested
+ * selections of total infections: every stage keeps everything the earlier
+ * stages chose and only adds components, so nobody loses a feature as the
+ * rollout grows.
+ * <p>
+ * A stage only chooses among the components not chosen yet, filling the room
+ * between the users already infected and the new limit with a
+ * {@link SubsetSumSelector}. The component index is reused as is, so a stage
+ * costs a pass over the remaining component sizes plus the subset sum over
+ * the delta, and none of the earlier stages is recomputed.
+ * </p>
+ * <p>
+ * Components larger than the final limit are never chosen; plan over
+ * {@link com.khan.interview.chris.limitedInfection.graph.Cohorts} to ramp
+ * through a giant component. The component ids of the index must not change
+ * during the rollout. Not thread safe.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class RampPlanner {
+
+	private final ComponentIndex index;
+	private final BitSet remaining;
+	private final BitSet chosen = new BitSet();
+	private final SubsetSumSelector selector = new SubsetSumSelector();
+	private long size;
+	private int lastLimit;
+	private int stages;
+
+	/**
+	 * Plans over the components of the given users, e.g. every user for a
+	 * site wide rollout.
+	 *
+	 * @param index
+	 *            the components to choose from
+	 * @param users
+	 *            indexed users whose components may be chosen
+	 * @throws IllegalArgumentException
+	 *             if one of the users is not indexed
+	 */
+	public RampPlanner(ComponentIndex index, List<User> users) {
+		this(index, index.componentsOf(users));
+	}
+
+	/**
+	 * @param index
+	 *            the components to choose from
+	 * @param candidates
+	 *            ids of the components that may be chosen
+	 */
+	public RampPlanner(ComponentIndex index, BitSet candidates) {
+		this.index = index;
+		this.remaining = (BitSet) candidates.clone();
+	}
+
+	/**
+	 * @param users
+	 *            number of users rolled out to at 100%
+	 * @param percents
+	 *            stages, ascending, between 0 and 100
+	 * @return the limit of every stage
+	 */
+	public static int[] limitsFor(int users, double... percents) {
+		int[] limits = new int[percents.length];
+		for (int i = 0; i < percents.length; i++) {
+			if (percents[i] < 0 || percents[i] > 100) {
+				throw new IllegalArgumentException("percents must be between 0 and 100");
+			}
+			limits[i] = (int) Math.floor(users * percents[i] / 100);
+		}
+		return limits;
+	}
+
+	/**
+	 * Plans the next stage.
+	 *
+	 * @param limit
+	 *            cap on the number of users infected after this stage, at least
+	 *            the limit of the previous stage
+	 * @return ids of the components added by this stage, possibly none
+	 * @throws IllegalArgumentException
+	 *             if the limit is below the previous one
+	 */
+	public BitSet nextStage(int limit) {
+		if (limit < lastLimit) {
+			throw new IllegalArgumentException(
+					"A stage can't shrink the rollout: limit " + limit + " is below " + lastLimit);
+		}
+		lastLimit = limit;
+		stages++;
+		BitSet added = new BitSet();
+		long room = limit - size;
+		if (room <= 0)
+			return added;
+
+		int count = 0;
+		int[] ids = new int[remaining.cardinality()];
+		int[] sizes = new int[ids.length];
+		for (int c = remaining.nextSetBit(0); c >= 0; c = remaining.nextSetBit(c + 1)) {
+			int componentSize = index.componentSize(c);
+			if (componentSize > room)
+				continue;
+			ids[count] = c;
+			sizes[count++] = componentSize;
+		}
+		if (count < ids.length) {
+			ids = Arrays.copyOf(ids, count);
+			sizes = Arrays.copyOf(sizes, count);
+		}
+		for (int pick : selector.select(sizes, (int) room)) {
+			added.set(ids[pick]);
+			size += sizes[pick];
+		}
+		chosen.or(added);
+		remaining.andNot(added);
+		return added;
+	}
+
+	/**
+	 * Plans the next stage and lists the users it adds.
+	 *
+	 * @param limit
+	 *            cap on the number of users infected after this stage
+	 * @return the users added by this stage, to deploy to
+	 */
+	public List<User> nextStageUsers(int limit) {
+		BitSet added = nextStage(limit);
+		List<User> users = new ArrayList<User>();
+		for (int c = added.nextSetBit(0); c >= 0; c = added.nextSetBit(c + 1)) {
+			users.addAll(index.members(c));
+		}
+		return users;
+	}
+
+	/**
+	 * @return ids of every component chosen so far
+	 */
+	public BitSet chosen() {
+		return (BitSet) chosen.clone();
+	}
+
+	/**
+	 * @return number of users chosen so far
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return number of stages planned so far
+	 */
+	public int stages() {
+		return stages;
+	}
+
+	@Override
+	public String toString() {
+		return "RampPlanner [stages=" + stages + ", size=" + size + ", components=" + chosen.cardinality() + "]";
+	}
+}
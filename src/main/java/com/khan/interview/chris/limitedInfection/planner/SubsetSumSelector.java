@@ -0,0 +1,220 @@
+package com.khan.interview.chris.limitedInfection.planner;
+
+import java.util.Arrays;
+
+/**
+ * SubsetSumSelector picks a combination of items (e.g. the sizes of disjoint
+ * total infections) whose weights add up as close as possible to, but not
+ * above, a limit.
+ * <p>
+ * The exact answer is found with a bitset dynamic program over every reachable
+ * sum, shifting and OR-ing 64 sums at a time. Items of equal weight are
+ * bundled in powers of two so that thousands of single-user components only
+ * cost a handful of shifts. For each sum the bundle that first reached it is
+ * remembered, which is enough to walk the chosen bundles back.
+ * </p>
+ * <p>
+ * The DP needs roughly <code>4.1 * limit</code> bytes. When that is above the
+ * memory budget, weights and limit are scaled down (weights rounded up, so any
+ * scaled solution is still under the real limit), the leftover room is topped
+ * up greedily, and the result is compared against plain first-fit decreasing.
+ * </p>
+ *
+ * @author Christopher Chen
+ */
+public final class SubsetSumSelector {
+
+	/**
+	 * Default cap on memory for the exact DP, enough for limits of around 16
+	 * million users.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+	private final long memoryBudget;
+
+	/**
+	 * Creates a selector with the {@link #DEFAULT_MEMORY_BUDGET}.
+	 */
+	public SubsetSumSelector() {
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * @param memoryBudget
+	 *            cap in bytes on the memory the exact DP may use before falling
+	 *            back to the approximation
+	 */
+	public SubsetSumSelector(long memoryBudget) {
+		if (memoryBudget <= 0) {
+			throw new IllegalArgumentException("memoryBudget must be positive");
+		}
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Bytes needed by the exact DP for the given limit.
+	 *
+	 * @param limit
+	 *            cap on the sum
+	 */
+	public static long exactMemory(int limit) {
+		return 4L * (limit + 1) + 8L * (limit / 64 + 1);
+	}
+
+	/**
+	 * Selects the items whose weights sum closest to, but not above, the limit.
+	 *
+	 * @param weights
+	 *            positive weight of every item
+	 * @param limit
+	 *            cap on the sum of the chosen weights
+	 * @return indices into weights of the chosen items, empty if nothing fits
+	 */
+	public int[] select(int[] weights, int limit) {
+		if (limit <= 0) {
+			return new int[0];
+		}
+		long exact = exactMemory(limit);
+		if (exact <= memoryBudget) {
+			return solve(weights, weights, limit);
+		}
+		int scale = (int) Math.min(Integer.MAX_VALUE, (exact + memoryBudget - 1) / memoryBudget);
+		int[] scaled = new int[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			scaled[i] = (int) (((long) weights[i] + scale - 1) / scale);
+		}
+		int[] approx = topUp(weights, solve(weights, scaled, limit / scale), limit);
+		int[] greedy = topUp(weights, new int[0], limit);
+		return sum(weights, approx) >= sum(weights, greedy) ? approx : greedy;
+	}
+
+	/**
+	 * @return total weight of the chosen items
+	 */
+	public static long sum(int[] weights, int[] chosen) {
+		long total = 0;
+		for (int i : chosen) {
+			total += weights[i];
+		}
+		return total;
+	}
+
+	/**
+	 * Exact DP over the given (possibly scaled) weights and limit.
+	 */
+	private static int[] solve(int[] weights, int[] dpWeights, int limit) {
+		// group items of equal weight
+		int[] order = sortedByWeight(dpWeights);
+		int bundleCount = 0;
+		int[] bundleWeight = new int[2 * weights.length + 1];
+		// bundle b covers order[bundleStart[b] .. bundleStart[b] + bundleSize[b])
+		int[] bundleStart = new int[bundleWeight.length];
+		int[] bundleSize = new int[bundleWeight.length];
+		for (int i = 0; i < order.length;) {
+			int w = dpWeights[order[i]];
+			int j = i;
+			while (j < order.length && dpWeights[order[j]] == w)
+				j++;
+			if (w > limit || w <= 0) {
+				i = j;
+				continue;
+			}
+			// split the group into bundles of 1, 2, 4, ... items and a remainder
+			int remaining = Math.min(j - i, limit / w);
+			int start = i;
+			for (int k = 1; remaining > 0; k <<= 1) {
+				int take = Math.min(k, remaining);
+				bundleWeight[bundleCount] = take * w;
+				bundleStart[bundleCount] = start;
+				bundleSize[bundleCount] = take;
+				bundleCount++;
+				start += take;
+				remaining -= take;
+			}
+			i = j;
+		}
+
+		long[] reach = new long[limit / 64 + 1];
+		int[] from = new int[limit + 1];
+		reach[0] = 1L;
+		int lastWord = limit / 64;
+		long lastMask = (limit % 64 == 63) ? -1L : (1L << (limit % 64 + 1)) - 1;
+		for (int b = 0; b < bundleCount && (reach[lastWord] & (1L << (limit % 64))) == 0; b++) {
+			int shiftWords = bundleWeight[b] >>> 6;
+			int shiftBits = bundleWeight[b] & 63;
+			// high to low so every word is read before it is updated
+			for (int i = lastWord; i >= shiftWords; i--) {
+				long shifted = reach[i - shiftWords] << shiftBits;
+				if (shiftBits != 0 && i - shiftWords - 1 >= 0)
+					shifted |= reach[i - shiftWords - 1] >>> (64 - shiftBits);
+				if (i == lastWord)
+					shifted &= lastMask;
+				long fresh = shifted & ~reach[i];
+				if (fresh == 0)
+					continue;
+				reach[i] |= fresh;
+				while (fresh != 0) {
+					int bit = Long.numberOfTrailingZeros(fresh);
+					from[(i << 6) + bit] = b;
+					fresh &= fresh - 1;
+				}
+			}
+		}
+
+		int best = limit;
+		while ((reach[best >>> 6] & (1L << (best & 63))) == 0)
+			best--;
+		int count = 0;
+		for (int s = best; s > 0; s -= bundleWeight[from[s]]) {
+			count += bundleSize[from[s]];
+		}
+		int[] chosen = new int[count];
+		int c = 0;
+		for (int s = best; s > 0; s -= bundleWeight[from[s]]) {
+			int b = from[s];
+			for (int k = 0; k < bundleSize[b]; k++) {
+				chosen[c++] = order[bundleStart[b] + k];
+			}
+		}
+		return chosen;
+	}
+
+	/**
+	 * Adds unchosen items, largest first, while they still fit under the limit.
+	 */
+	private static int[] topUp(int[] weights, int[] chosen, int limit) {
+		boolean[] taken = new boolean[weights.length];
+		long total = 0;
+		for (int i : chosen) {
+			taken[i] = true;
+			total += weights[i];
+		}
+		int[] order = sortedByWeight(weights);
+		int[] result = Arrays.copyOf(chosen, weights.length);
+		int count = chosen.length;
+		for (int i = order.length - 1; i >= 0 && total < limit; i--) {
+			int item = order[i];
+			if (!taken[item] && total + weights[item] <= limit) {
+				total += weights[item];
+				result[count++] = item;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * @return item indices sorted by ascending weight
+	 */
+	private static int[] sortedByWeight(int[] weights) {
+		long[] packed = new long[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			packed[i] = ((long) weights[i] << 32) | i;
+		}
+		Arrays.sort(packed);
+		int[] order = new int[weights.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = (int) packed[i];
+		}
+		return order;
+	}
+}
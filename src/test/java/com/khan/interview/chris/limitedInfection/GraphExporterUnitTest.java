@@ -0,0 +1,94 @@
+package com.khan.interview.chris.limitedInfection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.khan.interview.chris.limitedInfection.graph.TestUsers;
+import com.khan.interview.chris.limitedInfection.graph.UserGraph;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class GraphExporterUnitTest {
+
+	@Test
+	public void dotTest() throws Exception {
+		List<User> users = TestUsers.generateCircleOfUsers(5, 0);
+		users.addAll(TestUsers.generateCircleOfUsers(3, 5));
+		UserGraph graph = UserGraph.of(users);
+		BitSet infected = GraphExporter.infectedSet(graph, users.subList(0, 5));
+		GraphExporter exporter = new GraphExporter(graph);
+
+		StringWriter out = new StringWriter();
+		exporter.writeUsers(infected, out);
+		String dot = out.toString();
+		// every relation once
+		assertEquals(8, count(dot, " -- "));
+		assertEquals(5, count(dot, "fillcolor=red"));
+
+		out = new StringWriter();
+		exporter.setMinComponentSize(4);
+		exporter.writeComponents(infected, out);
+		String components = out.toString();
+		assertTrue(components, components.contains("5/5"));
+		assertTrue(components, components.contains("1 components under 4\\n0/3"));
+		assertTrue(components, components.contains("#ff0000"));
+	}
+
+	@Test
+	public void gexfTest() throws Exception {
+		List<User> users = TestUsers.generateCircleOfUsers(4, 0);
+		users.get(0).setUsername("<coach & \"co\">");
+		UserGraph graph = UserGraph.of(users);
+		GraphExporter exporter = new GraphExporter(graph);
+		exporter.setFormat(GraphExporter.Format.GEXF);
+		StringWriter out = new StringWriter();
+		exporter.writeUsers(GraphExporter.infectedSet(graph, users.subList(0, 1)), out);
+
+		Document gexf = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new ByteArrayInputStream(out.toString().getBytes(StandardCharsets.UTF_8)));
+		assertEquals(4, gexf.getElementsByTagName("node").getLength());
+		assertEquals(4, gexf.getElementsByTagName("edge").getLength());
+		assertEquals("<coach & \"co\">",
+				gexf.getElementsByTagName("node").item(0).getAttributes().getNamedItem("label").getNodeValue());
+	}
+
+	@Test
+	public void commaDecimalLocaleTest() throws Exception {
+		List<User> users = TestUsers.generateCircleOfUsers(5, 0);
+		UserGraph graph = UserGraph.of(users);
+		BitSet infected = GraphExporter.infectedSet(graph, users);
+		GraphExporter exporter = new GraphExporter(graph);
+		Locale previous = Locale.getDefault();
+		Locale.setDefault(Locale.GERMANY);
+		try {
+			StringWriter out = new StringWriter();
+			exporter.writeComponents(infected, out);
+			assertTrue(out.toString(), out.toString().contains("width=0.72"));
+			exporter.setFormat(GraphExporter.Format.GEXF);
+			out = new StringWriter();
+			exporter.writeComponents(infected, out);
+			assertTrue(out.toString(), out.toString().contains("<viz:size value=\"3.24\"/>"));
+		} finally {
+			Locale.setDefault(previous);
+		}
+	}
+
+	private static int count(String s, String part) {
+		int count = 0;
+		for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -1,17 +1,40 @@
 package com.khan.interview.chris.limitedInfection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import org.junit.Test;
 
+import com.khan.interview.chris.limitedInfection.deploy.Deployment;
+import com.khan.interview.chris.limitedInfection.deploy.DeploymentJournal;
+import com.khan.interview.chris.limitedInfection.deploy.DeploymentPipeline;
+import com.khan.interview.chris.limitedInfection.deploy.FeatureAssignments;
+import com.khan.interview.chris.limitedInfection.deploy.StoreAssignmentSink;
+import com.khan.interview.chris.limitedInfection.graph.CohortPartitioner;
+import com.khan.interview.chris.limitedInfection.graph.ComponentCache;
+import com.khan.interview.chris.limitedInfection.graph.DynamicComponents;
+import com.khan.interview.chris.limitedInfection.graph.MappedUserGraph;
+import com.khan.interview.chris.limitedInfection.graph.UserGraph;
+import com.khan.interview.chris.limitedInfection.metrics.InfectionMetrics;
+import com.khan.interview.chris.limitedInfection.model.FeatureRegistry;
 import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
 import com.khan.interview.chris.limitedInfection.model.User;
+import com.khan.interview.chris.limitedInfection.planner.RampPlanner;
 
 import junit.framework.Assert;
 
@@ -117,6 +140,477 @@ public class InfectionControllerUnitTest {
 		}
 	}
 
+	@Test
+	public void graphLimitedInfectionTest() {
+		List<User> aCircleGraph = generateCircleOfUsers(5, 0);
+		aCircleGraph.addAll(generateCircleOfUsers(2, 5));
+		List<String> pastVersions = new ArrayList<String>();
+		InfectionController controller = new InfectionController(aCircleGraph);
+		List<User> successInfect = controller.limited_infection(aCircleGraph, 4,
+				new KhanSiteFeature("Cool Blue", pastVersions, "version 1.0"));
+		assertEquals(2, successInfect.size());
+		assertTrue(successInfect.containsAll(aCircleGraph.subList(5, 7)));
+	}
+
+	@Test
+	public void graphTotalInfectionTestOddEven() {
+		List<User> oddEvenGraph = generateEvenOddListOfUsers(5);
+		List<String> pastVersions = new ArrayList<String>();
+		User danglingUser = new User("id0", "name0", null, null);
+		oddEvenGraph.add(danglingUser);
+		InfectionController controller = new InfectionController(oddEvenGraph);
+		List<User> startingList = new ArrayList<User>();
+		startingList.add(oddEvenGraph.get(0));
+		startingList.add(oddEvenGraph.get(3));
+		List<User> infected = controller.total_infection(startingList,
+				new KhanSiteFeature("Cool Blue", pastVersions, "version 1.0"));
+		assertEquals(5, infected.size());
+		assertNull(danglingUser.getCurrentFeature());
+		for (User u : oddEvenGraph.subList(0, 5)) {
+			assertEquals(new KhanSiteFeature("Cool Blue", pastVersions, "version 1.0"), u.getCurrentFeature());
+		}
+	}
+
+	@Test
+	public void subsetSumLimitedInfectionTest() {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		graph.addAll(generateCircleOfUsers(4, 8));
+		List<String> pastVersions = new ArrayList<String>();
+		KhanSiteFeature feature = new KhanSiteFeature("Cool Blue", pastVersions, "version 1.0");
+		// 5 + 3 is closest to 8 whereas a single component only gets 5
+		List<User> successInfect = new InfectionController(graph).limited_infection(graph, 8, feature,
+				LimitedInfectionStrategy.SUBSET_SUM);
+		assertEquals(8, successInfect.size());
+		assertTrue(successInfect.containsAll(graph.subList(0, 8)));
+		assertNull(graph.get(8).getCurrentFeature());
+
+		// same answer when walking the user objects directly
+		List<User> other = generateCircleOfUsers(5, 0);
+		other.addAll(generateCircleOfUsers(3, 5));
+		other.addAll(generateCircleOfUsers(4, 8));
+		assertEquals(7, new InfectionController().limited_infection(other, 7, feature,
+				LimitedInfectionStrategy.SUBSET_SUM).size());
+	}
+
+	@Test
+	public void assignmentsInfectionTest() {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		KhanSiteFeature red = new KhanSiteFeature("Hot Red", new ArrayList<String>(), "version 1.0");
+		InfectionController controller = new InfectionController(graph);
+		FeatureAssignments assignments = new FeatureAssignments();
+		controller.setAssignments(assignments);
+		controller.total_infection(graph.subList(0, 1), blue);
+		controller.limited_infection(graph, 4, red);
+		assertEquals(5, assignments.count(blue));
+		assertEquals(3, assignments.count(red));
+		// features are recorded in the store rather than on the users
+		for (User u : graph) {
+			assertNull(u.getCurrentFeature());
+		}
+		assertTrue(assignments.has(0, blue));
+		assertFalse(assignments.has(0, red));
+		assertEquals(Arrays.asList(red), assignments.featuresOf(6));
+	}
+
+	@Test
+	public void mappedGraphInfectionTest() throws IOException {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		Path file = Files.createTempFile("graph", ".snapshot");
+		try {
+			MappedUserGraph.write(graph, file);
+			try (MappedUserGraph mapped = MappedUserGraph.open(file)) {
+				InfectionController controller = new InfectionController(mapped);
+				FeatureAssignments assignments = new FeatureAssignments();
+				controller.setAssignments(assignments);
+				// users are looked up by id, so any User with the id will do
+				List<User> infected = controller.total_infection(
+						Arrays.asList(new User("id-6", "id-6", new ArrayList<User>(), null)), blue);
+				assertEquals(3, infected.size());
+				assertEquals(3, assignments.count(blue));
+				assertTrue(assignments.has(mapped.indexOf("id-5"), blue));
+				assertEquals(5, controller.limited_infection(graph, 6, blue).size());
+				assertEquals(8, assignments.count(blue));
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void mappedGraphDeployToUsersTest() throws IOException {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		final Map<String, User> byId = new HashMap<String, User>();
+		for (User u : graph) {
+			byId.put(u.getUID(), u);
+		}
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		Path file = Files.createTempFile("graph", ".snapshot");
+		try {
+			MappedUserGraph.write(graph, file);
+			try (MappedUserGraph mapped = MappedUserGraph.open(file)) {
+				InfectionController controller = new InfectionController(mapped);
+				try {
+					controller.deployTotalInfection(graph.subList(0, 1), blue);
+					fail("deployed to Users the snapshot doesn't keep");
+				} catch (IllegalStateException e) {
+					// expected
+				}
+				try {
+					controller.total_infection(graph.subList(0, 1), blue);
+					fail("deployed to Users the snapshot doesn't keep");
+				} catch (IllegalStateException e) {
+					// expected
+				}
+
+				mapped.setUserResolver(new Function<String, User>() {
+					@Override
+					public User apply(String uid) {
+						return byId.get(uid);
+					}
+				});
+				assertEquals(5, controller.deployTotalInfection(graph.subList(0, 1), blue));
+				for (User u : graph) {
+					assertEquals(blue, u.getCurrentFeature());
+				}
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void pipelineInfectionTest() throws Exception {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		InfectionController controller = new InfectionController(graph);
+		FeatureAssignments persisted = new FeatureAssignments();
+		try (DeploymentPipeline pipeline = new DeploymentPipeline(new StoreAssignmentSink(persisted))) {
+			controller.setPipeline(pipeline);
+			controller.total_infection(graph.subList(0, 1), blue);
+			assertEquals(5, controller.getLastDeployment().future().get().getWritten());
+		}
+		assertEquals(5, persisted.count(blue));
+		assertNull(graph.get(0).getCurrentFeature());
+	}
+
+	@Test
+	public void pipelineLimitedInfectionsTest() throws Exception {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		KhanSiteFeature red = new KhanSiteFeature("Hot Red", new ArrayList<String>(), "version 1.0");
+		Map<KhanSiteFeature, Integer> targets = new LinkedHashMap<KhanSiteFeature, Integer>();
+		targets.put(blue, 5);
+		targets.put(red, 4);
+		InfectionController controller = new InfectionController(graph);
+		FeatureAssignments persisted = new FeatureAssignments();
+		try (DeploymentPipeline pipeline = new DeploymentPipeline(new StoreAssignmentSink(persisted))) {
+			controller.setPipeline(pipeline);
+			controller.limited_infections(graph, targets);
+			Map<KhanSiteFeature, Deployment> deployments = controller.getLastDeployments();
+			assertEquals(Arrays.asList(blue, red), new ArrayList<KhanSiteFeature>(deployments.keySet()));
+			assertEquals(5, deployments.get(blue).future().get().getWritten());
+			assertEquals(3, deployments.get(red).future().get().getWritten());
+		}
+		assertEquals(5, persisted.count(blue));
+		assertEquals(3, persisted.count(red));
+	}
+
+	@Test
+	public void cachedTotalInfectionTest() {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		DynamicComponents components = new DynamicComponents(graph);
+		InfectionController controller = new InfectionController(components);
+		ComponentCache<List<User>> cache = ComponentCache.forUsers();
+		controller.setCache(cache);
+		assertEquals(5, controller.total_infection(graph.subList(0, 1), blue).size());
+		assertEquals(5, controller.total_infection(graph.subList(2, 3), blue).size());
+		assertEquals(1, cache.hitCount());
+		assertEquals(1, cache.missCount());
+
+		// joining the circles drops the cached component
+		components.addRelation(graph.get(0), graph.get(5));
+		assertEquals(8, controller.total_infection(graph.subList(0, 1), blue).size());
+		assertEquals(2, cache.missCount());
+	}
+
+	@Test
+	public void streamTotalInfectionTest() {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		InfectionController[] controllers = { new InfectionController(), new InfectionController(graph),
+				new InfectionController(new DynamicComponents(graph)) };
+		for (InfectionController controller : controllers) {
+			assertEquals(5, controller.streamTotalInfection(graph.subList(0, 1)).count());
+			assertEquals(8, controller.streamTotalInfection(Arrays.asList(graph.get(1), graph.get(6))).count());
+			assertEquals(2, controller.streamTotalInfection(graph.subList(0, 1)).limit(2).count());
+			// streaming alone deploys nothing
+			assertNull(graph.get(0).getCurrentFeature());
+		}
+
+		assertEquals(3, new InfectionController(graph).deployTotalInfection(graph.subList(5, 6), blue));
+		assertEquals(blue, graph.get(7).getCurrentFeature());
+		assertNull(graph.get(0).getCurrentFeature());
+
+		FeatureAssignments assignments = new FeatureAssignments();
+		InfectionController controller = new InfectionController(new DynamicComponents(graph));
+		controller.setAssignments(assignments);
+		assertEquals(5, controller.deployTotalInfection(graph.subList(0, 1), blue));
+		assertEquals(5, assignments.count(blue));
+		assertNull(graph.get(0).getCurrentFeature());
+	}
+
+	@Test
+	public void partialInfectionTest() {
+		List<User> graph = generateCircleOfUsers(100, 0);
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		try {
+			// one component, larger than the limit
+			new InfectionController(graph).limited_infection(graph.subList(0, 1), 10, blue);
+			fail("expected no consistent infection under the limit");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		InfectionController controller = new InfectionController(graph);
+		List<User> infected = controller.limited_infection(graph.subList(0, 1), 10, blue,
+				LimitedInfectionStrategy.PARTIAL);
+		assertEquals(10, infected.size());
+		assertEquals(2, controller.getLastPartialInfection().brokenEdges());
+		for (User u : infected) {
+			assertEquals(blue, u.getCurrentFeature());
+		}
+		assertNull(graph.get(50).getCurrentFeature());
+
+		// without a graph too
+		assertEquals(7, new InfectionController().limited_infection(graph.subList(50, 51), 7, blue,
+				LimitedInfectionStrategy.PARTIAL).size());
+	}
+
+	@Test
+	public void cohortInfectionTest() {
+		List<User> graph = generateCircleOfUsers(100, 0);
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		InfectionController controller = new InfectionController(graph);
+		try {
+			controller.limited_infection(graph, 35, blue, LimitedInfectionStrategy.COHORTS);
+			fail("expected the cohorts to be missing");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		controller.setCohorts(new CohortPartitioner().partition(UserGraph.of(graph), 10));
+		assertEquals(30, controller.limited_infection(graph, 35, blue, LimitedInfectionStrategy.COHORTS).size());
+	}
+
+	@Test
+	public void metricsTest() {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		InfectionMetrics metrics = new InfectionMetrics();
+		InfectionController[] controllers = { new InfectionController(), new InfectionController(graph) };
+		for (InfectionController controller : controllers) {
+			controller.setMetrics(metrics);
+			controller.total_infection(graph.subList(0, 1), blue);
+			try {
+				controller.limited_infection(graph.subList(0, 1), 2, blue);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			// no cohorts set
+			controllers[1].limited_infection(graph, 2, blue, LimitedInfectionStrategy.COHORTS);
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(2, metrics.getTotalInfections());
+		assertEquals(3, metrics.getFailedLimitedInfections());
+		assertEquals(10, metrics.getUsersInfected());
+		assertEquals(10, metrics.getUsersVisited());
+		// every relation of the circle, seen from both ends
+		assertEquals(20, metrics.getEdgesVisited());
+		assertEquals(2, metrics.getTotalInfectionTime().getCount());
+	}
+
+	@Test
+	public void rampInfectionTest() {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		graph.addAll(generateCircleOfUsers(2, 8));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		InfectionController controller = new InfectionController(graph);
+		RampPlanner ramp = controller.newRamp(graph);
+		List<User> first = controller.ramp_infection(ramp, 3, blue);
+		assertEquals(3, first.size());
+		List<User> second = controller.ramp_infection(ramp, 8, blue);
+		assertEquals(5, second.size());
+		for (User u : first) {
+			assertFalse(second.contains(u));
+			assertEquals(blue, u.getCurrentFeature());
+		}
+		assertEquals(2, controller.ramp_infection(ramp, 10, blue).size());
+	}
+
+	@Test
+	public void rampOnDynamicComponentsTest() {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		graph.addAll(generateCircleOfUsers(2, 8));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		DynamicComponents components = new DynamicComponents(graph);
+		InfectionController controller = new InfectionController(components);
+		RampPlanner ramp = controller.newRamp(graph);
+		List<User> first = controller.ramp_infection(ramp, 3, blue);
+		assertEquals(3, first.size());
+		// renumbers the live components, not the ones the rollout plans over
+		components.addRelation(graph.get(0), graph.get(8));
+		List<User> second = controller.ramp_infection(ramp, 8, blue);
+		assertEquals(5, second.size());
+		for (User u : first) {
+			assertFalse(second.contains(u));
+		}
+	}
+
+	@Test
+	public void journalRollbackTest() throws IOException {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		KhanSiteFeature red = new KhanSiteFeature("Hot Red", new ArrayList<String>(), "version 1.0");
+		FeatureRegistry registry = new FeatureRegistry();
+		registry.register(blue);
+		registry.register(red);
+		InfectionController controller = new InfectionController(graph);
+		Path file = Files.createTempFile("deployments", ".journal");
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			controller.setJournal(journal, registry);
+			controller.total_infection(graph.subList(0, 1), blue);
+			long blueRollout = controller.getLastRolloutId();
+			controller.total_infection(graph.subList(4, 6), red);
+			assertEquals(red, graph.get(0).getCurrentFeature());
+			assertEquals(red, graph.get(5).getCurrentFeature());
+
+			assertEquals(8, controller.rollback(controller.getLastRolloutId()));
+			assertEquals(blue, graph.get(0).getCurrentFeature());
+			assertNull(graph.get(5).getCurrentFeature());
+			assertEquals(5, controller.rollback(blueRollout));
+			assertNull(graph.get(0).getCurrentFeature());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void journalVersionBumpRollbackTest() throws IOException {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		KhanSiteFeature newBlue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 2.0");
+		FeatureRegistry registry = new FeatureRegistry();
+		registry.register(blue);
+		InfectionController controller = new InfectionController(graph);
+		Path file = Files.createTempFile("deployments", ".journal");
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			controller.setJournal(journal, registry);
+			assertEquals(5, controller.deployTotalInfection(graph.subList(0, 1), blue));
+			long blueRollout = controller.getLastRolloutId();
+			registry.register(newBlue);
+			controller.total_infection(graph.subList(2, 3), newBlue);
+			assertSame(newBlue, graph.get(4).getCurrentFeature());
+
+			assertEquals(5, controller.rollback(controller.getLastRolloutId()));
+			assertSame(blue, graph.get(4).getCurrentFeature());
+			assertEquals(5, controller.rollback(blueRollout));
+			assertNull(graph.get(0).getCurrentFeature());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void mappedGraphJournalRollbackTest() throws IOException {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		final Map<String, User> byId = new HashMap<String, User>();
+		for (User u : graph) {
+			byId.put(u.getUID(), u);
+		}
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		KhanSiteFeature red = new KhanSiteFeature("Hot Red", new ArrayList<String>(), "version 1.0");
+		FeatureRegistry registry = new FeatureRegistry();
+		registry.register(blue);
+		registry.register(red);
+		Path snapshot = Files.createTempFile("graph", ".snapshot");
+		Path file = Files.createTempFile("deployments", ".journal");
+		try {
+			MappedUserGraph.write(graph, snapshot);
+			try (MappedUserGraph mapped = MappedUserGraph.open(snapshot);
+					DeploymentJournal journal = DeploymentJournal.open(file)) {
+				InfectionController controller = new InfectionController(mapped);
+				try {
+					controller.setJournal(journal, registry);
+					fail("journaled Users the snapshot doesn't keep");
+				} catch (IllegalStateException e) {
+					// expected
+				}
+
+				mapped.setUserResolver(new Function<String, User>() {
+					@Override
+					public User apply(String uid) {
+						return byId.get(uid);
+					}
+				});
+				controller.setJournal(journal, registry);
+				controller.total_infection(graph.subList(0, 1), blue);
+				controller.total_infection(graph.subList(3, 4), red);
+				assertEquals(5, controller.rollback(controller.getLastRolloutId()));
+				for (User u : graph) {
+					assertSame(blue, u.getCurrentFeature());
+				}
+			}
+		} finally {
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void journalWithoutRegistryTest() throws IOException {
+		InfectionController controller = new InfectionController(generateCircleOfUsers(3, 0));
+		Path file = Files.createTempFile("deployments", ".journal");
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			controller.setJournal(journal, null);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void multipleLimitedInfectionsTest() {
+		List<User> graph = generateCircleOfUsers(5, 0);
+		graph.addAll(generateCircleOfUsers(3, 5));
+		graph.addAll(generateCircleOfUsers(2, 8));
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		KhanSiteFeature red = new KhanSiteFeature("Hot Red", new ArrayList<String>(), "version 1.0");
+		Map<KhanSiteFeature, Integer> targets = new LinkedHashMap<KhanSiteFeature, Integer>();
+		targets.put(blue, 5);
+		targets.put(red, 4);
+		Map<KhanSiteFeature, List<User>> infected = new InfectionController(graph).limited_infections(graph,
+				targets);
+		assertEquals(5, infected.get(blue).size());
+		assertEquals(3, infected.get(red).size());
+		for (User u : infected.get(red)) {
+			assertEquals(red, u.getCurrentFeature());
+		}
+		assertNull(graph.get(9).getCurrentFeature());
+	}
+
 	@Test
 	public void generateRandomUsersGraphTest() {
 		List<User> generatedGraphTest = generateRandomUsersGraph(20);
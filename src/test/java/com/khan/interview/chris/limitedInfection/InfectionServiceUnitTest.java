@@ -0,0 +1,82 @@
+package com.khan.interview.chris.limitedInfection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.deploy.DeploymentPipeline;
+import com.khan.interview.chris.limitedInfection.deploy.FeatureAssignments;
+import com.khan.interview.chris.limitedInfection.deploy.StoreAssignmentSink;
+import com.khan.interview.chris.limitedInfection.graph.GraphVersion;
+import com.khan.interview.chris.limitedInfection.graph.TestUsers;
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class InfectionServiceUnitTest {
+
+	@Test
+	public void concurrentQueriesTest() throws Exception {
+		List<User> users = TestUsers.generateCircleOfUsers(5, 0);
+		users.addAll(TestUsers.generateCircleOfUsers(3, 5));
+		users.addAll(TestUsers.generateCircleOfUsers(4, 8));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			InfectionService service = new InfectionService(executor);
+			service.publish(users);
+			List<CompletableFuture<InfectionResult>> totals = new ArrayList<CompletableFuture<InfectionResult>>();
+			List<CompletableFuture<InfectionResult>> limited = new ArrayList<CompletableFuture<InfectionResult>>();
+			for (int i = 0; i < 200; i++) {
+				totals.add(service.submitTotalInfection(Collections.singletonList(users.get(i % users.size()))));
+				limited.add(service.submitLimitedInfection(users, 8, LimitedInfectionStrategy.SUBSET_SUM));
+			}
+			int[] componentSizes = { 5, 5, 5, 5, 5, 3, 3, 3, 4, 4, 4, 4 };
+			for (int i = 0; i < 200; i++) {
+				assertEquals(componentSizes[i % users.size()], totals.get(i).get(10, TimeUnit.SECONDS).size());
+				assertEquals(8, limited.get(i).get(10, TimeUnit.SECONDS).size());
+			}
+			// queries never deploy
+			for (User u : users) {
+				assertEquals(null, u.getCurrentFeature());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void publishSwapsVersionTest() throws Exception {
+		List<User> users = TestUsers.generateCircleOfUsers(5, 0);
+		users.addAll(TestUsers.generateCircleOfUsers(3, 5));
+		InfectionService service = new InfectionService();
+		GraphVersion first = service.publish(users);
+		InfectionResult before = service.totalInfection(users.subList(0, 1));
+
+		// join the two circles and publish a new version
+		users.get(0).addRelatedUser(users.get(5));
+		GraphVersion second = service.publish(users);
+		assertEquals(first.version() + 1, second.version());
+		InfectionResult after = service.totalInfection(users.subList(0, 1));
+		assertEquals(5, before.size());
+		assertEquals(first, before.getGraphVersion());
+		assertEquals(8, after.size());
+		assertEquals(second, after.getGraphVersion());
+
+		FeatureAssignments assignments = new FeatureAssignments();
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		try (DeploymentPipeline pipeline = new DeploymentPipeline(new StoreAssignmentSink(assignments))) {
+			service.setPipeline(pipeline);
+			service.deploy(after, blue).future().get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(8, assignments.count(blue));
+		assertTrue(service.limitedInfection(users, 7, LimitedInfectionStrategy.SINGLE_COMPONENT).size() == 0);
+	}
+}
@@ -0,0 +1,40 @@
+package com.khan.interview.chris.limitedInfection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class UserGraphGeneratorUnitTest {
+
+	@Test
+	public void generateRandomUsersTest() {
+		List<User> users = UserGraphGenerator.generateRandomUsers(10000, 6, 1);
+		assertEquals(10000, users.size());
+		long relations = 0;
+		for (User u : users) {
+			for (User r : u.getRelatedUsers()) {
+				assertTrue(r.hasRelatedUser(u));
+			}
+			relations += u.getRelatedUsers().size();
+		}
+		// a few duplicate and self pairs get dropped
+		assertTrue(relations > 59000 && relations <= 60000);
+		assertEquals("n-42", users.get(42).getUsername());
+	}
+
+	@Test
+	public void graphViewerConversionTest() {
+		List<User> users = GraphViewer.generateRandomUserGraph(300);
+		assertTrue(users.size() >= 300);
+		for (User u : users) {
+			for (User r : u.getRelatedUsers()) {
+				assertTrue(r.hasRelatedUser(u));
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeploymentJournalUnitTest {
+
+	private static final int NONE = DeploymentJournal.NO_FEATURE;
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("deployments", ".journal");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void replayTest() throws IOException {
+		BitSet sparse = new BitSet();
+		for (int u = 0; u < 100000; u += 3) {
+			sparse.set(u);
+		}
+		long first;
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			first = journal.newRolloutId();
+			// users 0-3 had feature 1 before, the others none
+			journal.append(first, 0, new int[] { 2, 3, 7, 8, 9 }, new IntUnaryOperator() {
+				@Override
+				public int applyAsInt(int user) {
+					return user < 4 ? 1 : NONE;
+				}
+			});
+			journal.append(journal.newRolloutId(), 1, NONE, sparse);
+			journal.sync();
+		}
+
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			final List<DeploymentJournal.Batch> batches = new ArrayList<DeploymentJournal.Batch>();
+			journal.replay(new DeploymentJournal.BatchListener() {
+				@Override
+				public void batch(DeploymentJournal.Batch batch) {
+					batches.add(batch);
+				}
+			});
+			assertEquals(3, batches.size());
+			assertEquals("{7, 8, 9}", batches.get(0).getUsers().toString());
+			assertEquals(NONE, batches.get(0).getPreviousFeatureId());
+			assertEquals("{2, 3}", batches.get(1).getUsers().toString());
+			assertEquals(1, batches.get(1).getPreviousFeatureId());
+			assertEquals(first, batches.get(1).getRolloutId());
+			assertEquals(sparse, batches.get(2).getUsers());
+			assertEquals(first + 2, journal.newRolloutId());
+
+			int[] state = journal.replayState(10);
+			assertArrayEquals(new int[] { 1, NONE, 0, 1, NONE, NONE, 1, 0, 0, 1 }, state);
+		}
+	}
+
+	@Test
+	public void tornTailTest() throws IOException {
+		BitSet users = new BitSet();
+		users.set(0, 50);
+		long end;
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			journal.append(journal.newRolloutId(), 0, NONE, users);
+			end = journal.length();
+			journal.append(journal.newRolloutId(), 1, 0, users);
+		}
+		// a crash while the second batch was being written
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0x55 }), end + 12);
+		}
+
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			assertEquals(end, journal.length());
+			assertEquals(0, journal.replayState(50)[49]);
+			// the torn batch is overwritten
+			journal.append(journal.newRolloutId(), 2, 0, users);
+		}
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			assertEquals(2, journal.replayState(50)[49]);
+		}
+	}
+
+	@Test
+	public void rollbackTest() throws IOException {
+		BitSet students = new BitSet();
+		students.set(0, 1000);
+		BitSet coaches = new BitSet();
+		coaches.set(1000, 1010);
+		try (DeploymentJournal journal = DeploymentJournal.open(file)) {
+			journal.append(journal.newRolloutId(), 0, NONE, students);
+			long rollout = journal.newRolloutId();
+			journal.append(rollout, 1, 0, students);
+			journal.append(rollout, 1, NONE, coaches);
+
+			List<DeploymentJournal.Batch> inverse = journal.rollback(rollout);
+			assertEquals(2, inverse.size());
+			assertEquals(coaches, inverse.get(0).getUsers());
+			assertEquals(NONE, inverse.get(0).getFeatureId());
+			assertEquals(0, inverse.get(1).getFeatureId());
+			assertTrue(inverse.get(1).isRollback());
+
+			int[] state = journal.replayState(1010);
+			assertEquals(0, state[0]);
+			assertEquals(NONE, state[1005]);
+			try {
+				journal.rollback(rollout);
+				throw new AssertionError("rolled back twice");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+public class DeploymentPipelineUnitTest {
+
+	private final KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+
+	@Test
+	public void batchesWithBoundedInFlightTest() throws Exception {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final AtomicInteger batches = new AtomicInteger();
+		final FeatureAssignments assignments = new FeatureAssignments();
+		final StoreAssignmentSink store = new StoreAssignmentSink(assignments);
+		AssignmentSink sink = new AssignmentSink() {
+			@Override
+			public void write(KhanSiteFeature feature, int[] users) {
+				int running = inFlight.incrementAndGet();
+				maxInFlight.accumulateAndGet(running, Math::max);
+				batches.incrementAndGet();
+				assertTrue(users.length <= 1000);
+				store.write(feature, users);
+				Thread.yield();
+				inFlight.decrementAndGet();
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			DeploymentPipeline pipeline = new DeploymentPipeline(sink, executor, 1000, 3);
+			final List<Long> progress = new ArrayList<Long>();
+			pipeline.setProgressListener(new DeploymentPipeline.ProgressListener() {
+				@Override
+				public void progress(Deployment deployment) {
+					synchronized (progress) {
+						progress.add(deployment.getWritten());
+					}
+				}
+			});
+			int[] users = new int[25500];
+			for (int i = 0; i < users.length; i++) {
+				users[i] = i * 2;
+			}
+			Deployment deployment = pipeline.deploy(blue, users).future().get(10, TimeUnit.SECONDS);
+			assertEquals(users.length, deployment.getWritten());
+			assertEquals(26, batches.get());
+			assertTrue(maxInFlight.get() <= 3);
+			assertEquals(26, progress.size());
+			assertEquals(users.length, assignments.count(blue));
+			assertTrue(assignments.has(51000 - 2, blue));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void failingSinkFailsDeploymentTest() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		AssignmentSink sink = new AssignmentSink() {
+			@Override
+			public void write(KhanSiteFeature feature, int[] users) throws IOException {
+				if (calls.incrementAndGet() == 3)
+					throw new IOException("store is down");
+			}
+		};
+		try (DeploymentPipeline pipeline = new DeploymentPipeline(sink)) {
+			Deployment deployment = pipeline.deploy(blue, new int[100000]);
+			try {
+				deployment.future().get(10, TimeUnit.SECONDS);
+				fail("deployment should have failed");
+			} catch (ExecutionException e) {
+				assertEquals("store is down", e.getCause().getMessage());
+			}
+			assertTrue(deployment.getWritten() < 100000);
+		}
+	}
+
+	@Test
+	public void errorInSinkFailsDeploymentTest() throws Exception {
+		AssignmentSink sink = new AssignmentSink() {
+			@Override
+			public void write(KhanSiteFeature feature, int[] users) {
+				throw new AssertionError("sink bug");
+			}
+		};
+		try (DeploymentPipeline pipeline = new DeploymentPipeline(sink)) {
+			try {
+				pipeline.deploy(blue, new int[100]).future().get(10, TimeUnit.SECONDS);
+				fail("deployment should have failed");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof AssertionError);
+			}
+		}
+	}
+
+	@Test
+	public void fullQueueRunsOnCallerTest() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger writtenOnCaller = new AtomicInteger();
+		final Thread caller = Thread.currentThread();
+		AssignmentSink sink = new AssignmentSink() {
+			@Override
+			public void write(KhanSiteFeature feature, int[] users) {
+				if (Thread.currentThread() == caller) {
+					writtenOnCaller.incrementAndGet();
+					return;
+				}
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		try (DeploymentPipeline pipeline = new DeploymentPipeline(sink)) {
+			// every thread is stuck and the queue fills up, so the last
+			// deployment is written by the caller
+			int lanes = DeploymentPipeline.DEFAULT_MAX_IN_FLIGHT + DeploymentPipeline.DEFAULT_QUEUE_CAPACITY;
+			List<Deployment> deployments = new ArrayList<Deployment>();
+			for (int i = 0; i < lanes + 1; i++) {
+				deployments.add(pipeline.deploy(blue, new int[1]));
+			}
+			assertEquals(1, writtenOnCaller.get());
+			assertTrue(deployments.get(lanes).isDone());
+			release.countDown();
+			for (Deployment deployment : deployments) {
+				deployment.future().get(10, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	@Test
+	public void fileSinkTest() throws Exception {
+		Path file = Files.createTempFile("assignments", ".tsv");
+		try {
+			try (FileAssignmentSink sink = new FileAssignmentSink(file);
+					DeploymentPipeline pipeline = new DeploymentPipeline(sink)) {
+				assertTrue(pipeline.deploy(blue, new int[] { 1, 2, 3 }).future().get().isDone());
+				assertTrue(pipeline.deploy(blue, new int[0]).isDone());
+			}
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			assertEquals(3, lines.size());
+			assertEquals("Cool Blue\tversion 1.0\t1", lines.get(0));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
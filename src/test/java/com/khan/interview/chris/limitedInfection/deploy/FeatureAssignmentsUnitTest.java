@@ -0,0 +1,55 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+public class FeatureAssignmentsUnitTest {
+
+	private final KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+	private final KhanSiteFeature red = new KhanSiteFeature("Hot Red", new ArrayList<String>(), "version 1.0");
+
+	@Test
+	public void bulkAssignAndClearTest() {
+		FeatureAssignments assignments = new FeatureAssignments();
+		BitSet users = new BitSet();
+		users.set(0, 1000);
+		assignments.assign(blue, users);
+		assignments.assign(red, new int[] { 5, 2000 });
+		assertEquals(1000, assignments.count(blue));
+		assertTrue(assignments.has(999, blue));
+		assertFalse(assignments.has(1000, blue));
+		assertEquals(Arrays.asList(blue, red), assignments.featuresOf(5));
+
+		BitSet rollback = new BitSet();
+		rollback.set(0, 500);
+		assignments.clear(blue, rollback);
+		assignments.clear(red, new int[] { 5 });
+		assertEquals(500, assignments.count(blue));
+		assertEquals(Arrays.asList(red), assignments.featuresOf(2000));
+		assertTrue(assignments.featuresOf(5).isEmpty());
+
+		assignments.clearAll(blue);
+		assertEquals(0, assignments.count(blue));
+		assertEquals(1, assignments.features().size());
+	}
+
+	@Test
+	public void equalFeaturesShareAssignmentsTest() {
+		FeatureAssignments assignments = new FeatureAssignments();
+		assignments.assign(blue, new int[] { 1 });
+		KhanSiteFeature sameBlue = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+		assertTrue(assignments.has(1, sameBlue));
+		// the returned bitset is a copy
+		assignments.usersWith(blue).clear();
+		assertEquals(1, assignments.count(blue));
+	}
+}
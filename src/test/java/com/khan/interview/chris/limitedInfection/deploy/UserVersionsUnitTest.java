@@ -0,0 +1,42 @@
+package com.khan.interview.chris.limitedInfection.deploy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.FeatureRegistry;
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+
+public class UserVersionsUnitTest {
+
+	@Test
+	public void unsupportedUsersTest() {
+		FeatureRegistry registry = new FeatureRegistry();
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", Arrays.asList("2.0", "2.1"), "2.1");
+		int feature = registry.register(blue);
+		int old = registry.versionId("1.0");
+		int current = registry.versionId("2.1");
+
+		UserVersions versions = new UserVersions(6);
+		versions.set(new int[] { 0, 1, 2 }, current);
+		versions.set(3, old);
+		versions.set(4, old);
+		// user 5 is on an unknown version
+
+		BitSet unsupported = versions.unsupportedBy(registry, feature);
+		assertEquals("{3, 4}", unsupported.toString());
+		assertArrayEquals(new int[] { 0, 2 }, versions.supportedBy(registry, feature, new int[] { 0, 2, 3, 5 }));
+		assertEquals(3, versions.countByVersion()[current]);
+		assertEquals(1, versions.countByVersion()[FeatureRegistry.MAX_VERSIONS]);
+
+		// take the feature back from everyone it would break
+		FeatureAssignments assignments = new FeatureAssignments();
+		assignments.assign(blue, new int[] { 0, 1, 2, 3, 4, 5 });
+		assignments.clear(blue, unsupported);
+		assertEquals(4, assignments.count(blue));
+	}
+}
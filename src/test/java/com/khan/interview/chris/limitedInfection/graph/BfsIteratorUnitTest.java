@@ -0,0 +1,42 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BfsIteratorUnitTest {
+
+	@Test
+	public void matchesSerialTest() {
+		UserGraph graph = UserGraph.of(ParallelBfsUnitTest.generateSparseUsers(5000, 6000, 11));
+		int[][] seedLists = { { 0 }, { 1, 2, 3 }, { 4999, 0, 17, 17 } };
+		for (int[] seeds : seedLists) {
+			int[] expected = Traversal.SERIAL.reachableFrom(graph, seeds);
+			int[] actual = BfsIterator.stream(graph, seeds).toArray();
+			Arrays.sort(expected);
+			Arrays.sort(actual);
+			assertArrayEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void stopsEarlyTest() {
+		UserGraph graph = UserGraph.of(TestUsers.generateCircleOfUsers(1000, 0));
+		assertArrayEquals(new int[] { 0 }, BfsIterator.stream(graph, 0).limit(1).toArray());
+		assertEquals(10, BfsIterator.stream(graph, 0).limit(10).distinct().count());
+
+		BfsIterator it = new BfsIterator(graph, 500);
+		assertEquals(500, it.nextInt());
+		int taken = 1;
+		while (it.hasNext()) {
+			it.nextInt();
+			taken++;
+		}
+		assertEquals(1000, taken);
+		assertFalse(it.hasNext());
+	}
+}
@@ -0,0 +1,72 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class CohortPartitionerUnitTest {
+
+	@Test
+	public void balancedCohortsTest() {
+		UserGraph graph = UserGraph.of(ParallelBfsUnitTest.generateSparseUsers(5000, 8000, 7));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			// tiny grain so every round is forked
+			CohortPartitioner partitioner = new CohortPartitioner(pool, 64);
+			partitioner.setMaxRounds(0);
+			Cohorts slices = partitioner.partition(graph, 10);
+			partitioner.setMaxRounds(CohortPartitioner.DEFAULT_MAX_ROUNDS);
+			Cohorts cohorts = partitioner.partition(graph, 10);
+
+			assertEquals(10, cohorts.count());
+			int total = 0;
+			for (int c = 0; c < cohorts.count(); c++) {
+				int size = cohorts.componentSize(c);
+				assertTrue("cohort " + c + " has " + size + " users", size >= 485 && size <= 515);
+				for (int v : cohorts.memberIndices(c)) {
+					assertEquals(c, cohorts.componentOf(v));
+				}
+				total += size;
+			}
+			assertEquals(graph.size(), total);
+			assertTrue(cohorts.cutEdges() <= slices.cutEdges());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void independentOfSchedulingTest() {
+		UserGraph graph = UserGraph.of(ParallelBfsUnitTest.generateSparseUsers(5000, 8000, 11));
+		ForkJoinPool serial = new ForkJoinPool(1);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			// loose enough that no cohort fills up, so every round only
+			// depends on the previous one
+			CohortPartitioner whole = new CohortPartitioner(serial, Integer.MAX_VALUE);
+			whole.setImbalance(0.9);
+			CohortPartitioner forked = new CohortPartitioner(pool, 64);
+			forked.setImbalance(0.9);
+			Cohorts expected = whole.partition(graph, 10);
+			Cohorts cohorts = forked.partition(graph, 10);
+			for (int v = 0; v < graph.size(); v++) {
+				assertEquals(expected.componentOf(v), cohorts.componentOf(v));
+			}
+		} finally {
+			serial.shutdown();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void keepsClassroomsTogetherTest() {
+		// one component of 100 classrooms of 10 users, chained by their coaches
+		UserGraph graph = UserGraph.of(PartialInfectionUnitTest.generateClassrooms(100, 9));
+		Cohorts cohorts = new CohortPartitioner().partition(graph, 10);
+		// at most the relations between the coaches should be cut
+		assertTrue(cohorts.toString(), cohorts.cutEdges() <= 99);
+	}
+}
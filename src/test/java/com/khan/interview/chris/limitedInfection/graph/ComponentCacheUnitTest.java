@@ -0,0 +1,101 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class ComponentCacheUnitTest {
+
+	private static final ComponentCache.Weigher<int[]> LENGTH = new ComponentCache.Weigher<int[]>() {
+		@Override
+		public int weigh(int[] value) {
+			return value.length;
+		}
+	};
+
+	private static final ComponentCache.Loader<int[]> SIZED = new ComponentCache.Loader<int[]>() {
+		@Override
+		public int[] load(int c) {
+			return new int[c];
+		}
+	};
+
+	@Test
+	public void evictsLeastRecentlyUsedTest() {
+		ComponentCache<int[]> cache = new ComponentCache<int[]>(3, 100, LENGTH);
+		int[] first = cache.get(1, 10, SIZED);
+		cache.get(1, 20, SIZED);
+		cache.get(1, 30, SIZED);
+		// touch 10 so 20 is the least recently used
+		assertSame(first, cache.get(1, 10, SIZED));
+		cache.get(1, 5, SIZED);
+		assertEquals(3, cache.size());
+		assertEquals(45, cache.weight());
+		assertEquals(1, cache.evictionCount());
+		assertEquals(1, cache.hitCount());
+		assertEquals(4, cache.missCount());
+
+		// over the weight bound on its own, never cached
+		cache.get(1, 101, SIZED);
+		assertEquals(3, cache.size());
+		// evicts by weight
+		cache.get(1, 60, SIZED);
+		assertEquals(75, cache.weight());
+
+		// other versions are separate entries
+		cache.get(2, 60, SIZED);
+		cache.retainVersion(2);
+		assertEquals(1, cache.size());
+		assertEquals(60, cache.weight());
+	}
+
+	@Test
+	public void loadRacingPublishTest() {
+		final ComponentCache<int[]> cache = ComponentCache.forIndices();
+		// a newer version is published while a query on version 1 loads
+		int[] members = cache.get(1, 7, new ComponentCache.Loader<int[]>() {
+			@Override
+			public int[] load(int c) {
+				cache.retainVersion(2);
+				return new int[] { 1, 2, 3 };
+			}
+		});
+		assertEquals(3, members.length);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void invalidatedByRelationsTest() {
+		List<User> users = TestUsers.generateCircleOfUsers(3, 0);
+		users.addAll(TestUsers.generateCircleOfUsers(2, 3));
+		final DynamicComponents components = new DynamicComponents(users);
+		ComponentCache<List<User>> cache = ComponentCache.forUsers();
+		components.addListener(cache.invalidator(0));
+		ComponentCache.Loader<List<User>> loader = new ComponentCache.Loader<List<User>>() {
+			@Override
+			public List<User> load(int c) {
+				return components.members(c);
+			}
+		};
+		int small = components.componentOf(3);
+		int large = components.componentOf(0);
+		assertEquals(2, cache.get(0, small, loader).size());
+		assertEquals(3, cache.get(0, large, loader).size());
+		assertEquals(2, cache.size());
+
+		components.addRelation(users.get(0), users.get(3));
+		assertEquals(0, cache.size());
+		assertEquals(5, cache.get(0, components.componentOf(3), loader).size());
+
+		components.removeRelation(users.get(0), users.get(3));
+		assertEquals(0, cache.size());
+		assertArrayEquals(new int[] { 2, 3 }, new int[] { cache.get(0, components.componentOf(3), loader).size(),
+				cache.get(0, components.componentOf(0), loader).size() });
+	}
+}
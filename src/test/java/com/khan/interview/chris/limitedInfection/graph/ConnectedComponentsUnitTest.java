@@ -0,0 +1,93 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static com.khan.interview.chris.limitedInfection.graph.TestUsers.generateCircleOfUsers;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class ConnectedComponentsUnitTest {
+
+	@Test
+	public void labelsComponentsTest() {
+		List<User> users = generateCircleOfUsers(5, 0);
+		users.addAll(generateCircleOfUsers(3, 5));
+		users.addAll(generateCircleOfUsers(2, 8));
+		ConnectedComponents components = ConnectedComponents.of(UserGraph.of(users));
+
+		assertEquals(3, components.count());
+		int a = components.componentOf(0);
+		int b = components.componentOf(5);
+		int c = components.componentOf(8);
+		for (int v = 0; v < 5; v++) {
+			assertEquals(a, components.componentOf(v));
+		}
+		assertNotEquals(a, b);
+		assertNotEquals(b, c);
+		assertEquals(5, components.componentSize(a));
+		assertEquals(3, components.componentSize(b));
+		assertEquals(2, components.componentSize(c));
+
+		int[] members = components.memberIndices(b);
+		Arrays.sort(members);
+		assertEquals("[5, 6, 7]", Arrays.toString(members));
+	}
+
+	@Test
+	public void sizeIndexTest() {
+		List<User> users = generateCircleOfUsers(5, 0);
+		users.addAll(generateCircleOfUsers(3, 5));
+		users.addAll(generateCircleOfUsers(2, 8));
+		ConnectedComponents components = ConnectedComponents.of(UserGraph.of(users));
+
+		assertEquals(-1, components.largestAtMost(1));
+		assertEquals(components.componentOf(8), components.largestAtMost(2));
+		assertEquals(components.componentOf(5), components.largestAtMost(4));
+		assertEquals(components.componentOf(0), components.largestAtMost(100));
+		assertEquals(1, components.rankAtMost(4));
+		assertEquals(components.componentOf(8), components.componentBySize(0));
+	}
+
+	@Test
+	public void largestCandidateTest() {
+		List<User> users = generateCircleOfUsers(5, 0);
+		users.addAll(generateCircleOfUsers(3, 5));
+		users.addAll(generateCircleOfUsers(3, 8));
+		users.addAll(generateCircleOfUsers(2, 11));
+		ConnectedComponents components = ConnectedComponents.of(UserGraph.of(users));
+		int a = components.componentOf(0);
+		int b = components.componentOf(5);
+		int c = components.componentOf(8);
+		int d = components.componentOf(11);
+
+		// fewer candidates than components under the limit
+		BitSet few = new BitSet();
+		few.set(d);
+		assertEquals(d, components.largestAtMost(4, few));
+		few.set(a);
+		assertEquals(d, components.largestAtMost(4, few));
+		assertEquals(a, components.largestAtMost(5, few));
+		few.clear(d);
+		assertEquals(-1, components.largestAtMost(4, few));
+
+		// as many candidates as components under the limit, ties included
+		BitSet many = new BitSet();
+		many.set(a);
+		many.set(b);
+		many.set(c);
+		many.set(d);
+		assertEquals(Math.max(b, c), components.largestAtMost(4, many));
+		many.clear(d);
+		assertEquals(Math.max(b, c), components.largestAtMost(3, many));
+		BitSet tied = new BitSet();
+		tied.set(b);
+		tied.set(c);
+		assertEquals(Math.max(b, c), components.largestAtMost(100, tied));
+	}
+}
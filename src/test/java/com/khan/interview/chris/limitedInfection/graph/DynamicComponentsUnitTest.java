@@ -0,0 +1,83 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static com.khan.interview.chris.limitedInfection.graph.TestUsers.generateCircleOfUsers;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.InfectionController;
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class DynamicComponentsUnitTest {
+
+	@Test
+	public void indexesExistingRelationsTest() {
+		List<User> users = generateCircleOfUsers(5, 0);
+		users.addAll(generateCircleOfUsers(3, 5));
+		DynamicComponents components = new DynamicComponents(users);
+
+		assertEquals(8, components.size());
+		int a = components.componentOf(components.indexOf(users.get(0)));
+		int b = components.componentOf(components.indexOf(users.get(5)));
+		assertNotEquals(a, b);
+		assertEquals(5, components.componentSize(a));
+		assertEquals(3, components.componentSize(b));
+		assertTrue(components.members(b).containsAll(users.subList(5, 8)));
+	}
+
+	@Test
+	public void addRelationMergesTest() {
+		List<User> users = generateCircleOfUsers(5, 0);
+		users.addAll(generateCircleOfUsers(3, 5));
+		DynamicComponents components = new DynamicComponents(users);
+
+		components.addRelation(users.get(2), users.get(6));
+		int merged = components.componentOf(components.indexOf(users.get(0)));
+		assertEquals(merged, components.componentOf(components.indexOf(users.get(7))));
+		assertEquals(8, components.componentSize(merged));
+		assertEquals(8, components.members(merged).size());
+		assertTrue(users.get(6).getRelatedUsers().contains(users.get(2)));
+
+		// brand new users get indexed on the way in
+		User newcomer = new User("id-new", "newcomer", new ArrayList<User>(), null);
+		components.addRelation(newcomer, users.get(0));
+		assertEquals(9, components.componentSize(components.componentOf(components.indexOf(newcomer))));
+	}
+
+	@Test
+	public void removeRelationSplitsTest() {
+		List<User> users = generateCircleOfUsers(4, 0);
+		DynamicComponents components = new DynamicComponents(users);
+		// cutting a circle twice leaves two pieces
+		components.removeRelation(users.get(0), users.get(1));
+		assertEquals(4, components.componentSize(components.componentOf(0)));
+		components.removeRelation(users.get(2), users.get(3));
+		int a = components.componentOf(components.indexOf(users.get(0)));
+		int b = components.componentOf(components.indexOf(users.get(1)));
+		assertNotEquals(a, b);
+		assertEquals(2, components.componentSize(a));
+		assertEquals(2, components.componentSize(b));
+		assertTrue(components.members(a).contains(users.get(3)));
+	}
+
+	@Test
+	public void controllerAnswersFromLiveIndexTest() {
+		List<User> users = generateCircleOfUsers(5, 0);
+		users.addAll(generateCircleOfUsers(3, 5));
+		DynamicComponents components = new DynamicComponents(users);
+		InfectionController controller = new InfectionController(components);
+		KhanSiteFeature feature = new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0");
+
+		assertEquals(3, controller.limited_infection(users, 4, feature).size());
+		components.addRelation(users.get(0), users.get(5));
+		List<User> seeds = new ArrayList<User>();
+		seeds.add(users.get(7));
+		assertEquals(8, controller.total_infection(seeds, feature).size());
+	}
+}
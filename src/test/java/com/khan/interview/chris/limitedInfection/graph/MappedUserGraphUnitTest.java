@@ -0,0 +1,79 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class MappedUserGraphUnitTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("graph", ".snapshot");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		List<User> users = ParallelBfsUnitTest.generateSparseUsers(2000, 3000, 7);
+		UserGraph graph = UserGraph.of(users);
+		MappedUserGraph.write(graph, file);
+		try (MappedUserGraph mapped = MappedUserGraph.open(file)) {
+			assertEquals(graph.size(), mapped.size());
+			assertEquals(graph.edgeCount(), mapped.edgeCount());
+			for (int v = 0; v <= graph.size(); v++) {
+				assertEquals(graph.offset(v), mapped.offset(v));
+			}
+			for (int v = 0; v < graph.size(); v++) {
+				assertEquals(graph.userAt(v).getUID(), mapped.uidOf(v));
+			}
+			int[][] seedLists = { { 0 }, { 5, 1999 } };
+			for (int[] seeds : seedLists) {
+				int[] expected = Traversal.SERIAL.reachableFrom(graph, seeds);
+				assertArrayEquals(expected, Traversal.SERIAL.reachableFrom(mapped, seeds));
+				int[] actual = new DirectionOptimizingBfs().reachableFrom(mapped, seeds);
+				Arrays.sort(expected);
+				Arrays.sort(actual);
+				assertArrayEquals(expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void uidLookupTest() throws IOException {
+		List<User> users = TestUsers.generateCircleOfUsers(50, 0);
+		users.get(3).setUID("élève");
+		MappedUserGraph.write(users, file);
+		try (MappedUserGraph mapped = MappedUserGraph.open(file)) {
+			for (int v = 0; v < mapped.size(); v++) {
+				assertEquals(v, mapped.indexOf(mapped.uidOf(v)));
+			}
+			assertEquals(3, mapped.indexOf("élève"));
+			assertEquals(-1, mapped.indexOf("missing"));
+			assertEquals(Arrays.asList(users.get(0).getUID(), "élève"),
+					mapped.uidsOf(new int[] { 0, 3 }));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFilesTest() throws IOException {
+		Files.write(file, new byte[MappedUserGraph.HEADER_SIZE]);
+		MappedUserGraph.open(file).close();
+	}
+}
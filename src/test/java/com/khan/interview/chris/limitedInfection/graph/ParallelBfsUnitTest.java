@@ -0,0 +1,83 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class ParallelBfsUnitTest {
+
+	@Test
+	public void matchesSerialTest() {
+		UserGraph graph = UserGraph.of(generateSparseUsers(5000, 6000, 11));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			// tiny grain so every level is forked
+			Traversal parallel = new ParallelBfs(pool, 8);
+			int[][] seedLists = { { 0 }, { 1, 2, 3 }, { 4999, 0, 17, 17 } };
+			for (int[] seeds : seedLists) {
+				int[] expected = Traversal.SERIAL.reachableFrom(graph, seeds);
+				int[] actual = parallel.reachableFrom(graph, seeds);
+				Arrays.sort(expected);
+				Arrays.sort(actual);
+				assertArrayEquals(expected, actual);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void directionOptimizingMatchesSerialTest() {
+		// dense enough that the middle levels go bottom-up
+		UserGraph graph = UserGraph.of(generateSparseUsers(3000, 30000, 5));
+		Traversal directionOptimizing = new DirectionOptimizingBfs();
+		int[][] seedLists = { { 0 }, { 10, 20 }, { 2999 } };
+		for (int[] seeds : seedLists) {
+			int[] expected = Traversal.SERIAL.reachableFrom(graph, seeds);
+			int[] actual = directionOptimizing.reachableFrom(graph, seeds);
+			Arrays.sort(expected);
+			Arrays.sort(actual);
+			assertArrayEquals(expected, actual);
+		}
+		// and across separate components
+		UserGraph circles = UserGraph.of(generateSparseUsers(200, 50, 3));
+		int[] expected = Traversal.SERIAL.reachableFrom(circles, 0, 100);
+		int[] actual = directionOptimizing.reachableFrom(circles, 0, 100);
+		Arrays.sort(expected);
+		Arrays.sort(actual);
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	public void seedsAreVisitedOnceTest() {
+		UserGraph graph = UserGraph.of(TestUsers.generateCircleOfUsers(10, 0));
+		assertEquals(10, new ParallelBfs().reachableFrom(graph, 0, 0, 5, 9).length);
+	}
+
+	/**
+	 * Creates count users joined by randomly chosen relations.
+	 */
+	static List<User> generateSparseUsers(int count, int relations, long seed) {
+		Random random = new Random(seed);
+		List<User> users = new ArrayList<User>(count);
+		for (int i = 0; i < count; i++) {
+			users.add(new User("id-" + i, "username-" + i, new ArrayList<User>(), null));
+		}
+		for (int i = 0; i < relations; i++) {
+			int a = random.nextInt(count);
+			int b = random.nextInt(count);
+			if (a != b)
+				users.get(a).addRelatedUser(users.get(b));
+		}
+		return users;
+	}
+}
@@ -0,0 +1,71 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class PartialInfectionUnitTest {
+
+	@Test
+	public void keepsClassroomsTogetherTest() {
+		// coaches 0, 4, 8, ... in a chain, each with 3 students of their own
+		UserGraph graph = UserGraph.of(generateClassrooms(5, 3));
+
+		PartialInfection two = PartialInfection.grow(graph, 8, 0);
+		assertEquals(8, two.size());
+		int[] members = two.members();
+		Arrays.sort(members);
+		assertEquals(Arrays.toString(new int[] { 0, 1, 2, 3, 4, 5, 6, 7 }), Arrays.toString(members));
+		// only the relation between the second and third coach
+		assertEquals(1, two.brokenEdges());
+
+		// the third classroom doesn't fit, so it is split to reach the limit
+		PartialInfection split = PartialInfection.grow(graph, 10, 0);
+		assertEquals(10, split.size());
+		assertEquals(3, split.brokenEdges());
+
+		// the whole graph fits
+		PartialInfection all = PartialInfection.grow(graph, 100, 8);
+		assertEquals(20, all.size());
+		assertEquals(0, all.brokenEdges());
+	}
+
+	@Test
+	public void stopsAtLimitTest() {
+		UserGraph circle = UserGraph.of(TestUsers.generateCircleOfUsers(1000, 0));
+		PartialInfection infection = PartialInfection.grow(circle, 10, 0);
+		assertEquals(10, infection.size());
+		assertEquals(2, infection.brokenEdges());
+		assertEquals(0, PartialInfection.grow(circle, 0, 0).size());
+		// two seeds on opposite sides of the circle
+		assertEquals(4, PartialInfection.grow(circle, 10, 0, 500).brokenEdges());
+	}
+
+	static List<User> generateClassrooms(int coaches, int students) {
+		List<User> users = new ArrayList<User>();
+		User previous = null;
+		for (int c = 0; c < coaches; c++) {
+			User coach = new User();
+			coach.setUID("coach-" + c);
+			coach.setUsername("coach-" + c);
+			users.add(coach);
+			for (int s = 0; s < students; s++) {
+				User student = new User();
+				student.setUID("student-" + c + "-" + s);
+				student.setUsername("student-" + c + "-" + s);
+				coach.addRelatedUser(student);
+				users.add(student);
+			}
+			if (previous != null)
+				previous.addRelatedUser(coach);
+			previous = coach;
+		}
+		return users;
+	}
+}
@@ -0,0 +1,33 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+/**
+ * User fixtures shared by the tests of several packages.
+ */
+public final class TestUsers {
+
+	private TestUsers() {
+	}
+
+	/**
+	 * Users related in a circle, or a single user without relations.
+	 */
+	public static List<User> generateCircleOfUsers(int number, int startingIndex) {
+		List<User> users = new ArrayList<User>();
+		for (int i = startingIndex; i < number + startingIndex; i++) {
+			User aUser = new User();
+			aUser.setUID("id-" + i);
+			aUser.setUsername("test-user-" + i);
+			users.add(aUser);
+		}
+		// 0->1->2->...->number->0
+		for (int i = 0; i < number && number > 1; i++) {
+			users.get(i).addRelatedUser(users.get((i + 1) % number));
+		}
+		return users;
+	}
+}
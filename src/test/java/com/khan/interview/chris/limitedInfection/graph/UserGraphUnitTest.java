@@ -0,0 +1,62 @@
+package com.khan.interview.chris.limitedInfection.graph;
+
+import static com.khan.interview.chris.limitedInfection.graph.TestUsers.generateCircleOfUsers;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class UserGraphUnitTest {
+
+	@Test
+	public void buildsAdjacencyTest() {
+		List<User> users = generateCircleOfUsers(5, 0);
+		UserGraph graph = UserGraph.of(users);
+		assertEquals(5, graph.size());
+		// every user in a circle has two neighbours
+		assertEquals(10, graph.edgeCount());
+		for (int v = 0; v < graph.size(); v++) {
+			assertEquals(users.get(v), graph.userAt(v));
+			assertEquals(v, graph.indexOf(users.get(v)));
+			assertEquals(2, graph.degree(v));
+		}
+	}
+
+	@Test
+	public void pullsInReachableUsersTest() {
+		List<User> users = generateCircleOfUsers(4, 0);
+		// only hand over one user, the rest should be discovered
+		UserGraph graph = UserGraph.of(users.subList(0, 1));
+		assertEquals(4, graph.size());
+		assertEquals(0, graph.indexOf(users.get(0)));
+	}
+
+	@Test
+	public void reachableFromTest() {
+		List<User> users = generateCircleOfUsers(5, 0);
+		users.addAll(generateCircleOfUsers(3, 5));
+		users.add(new User("id-dangling", "dangling", null, null));
+		UserGraph graph = UserGraph.of(users);
+
+		assertEquals(5, graph.reachableFrom(0).length);
+		assertEquals(3, graph.reachableFrom(6).length);
+		assertEquals(1, graph.reachableFrom(8).length);
+		// multiple seeds in the same component are only counted once
+		assertEquals(8, graph.reachableFrom(0, 1, 5, 7).length);
+
+		List<User> reached = graph.toUsers(graph.reachableFrom(5));
+		assertTrue(reached.containsAll(users.subList(5, 8)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownUserTest() {
+		UserGraph graph = UserGraph.of(generateCircleOfUsers(3, 0));
+		graph.indicesOf(Arrays.asList(new User("id-other", "other", new ArrayList<User>(), null)));
+	}
+}
@@ -0,0 +1,119 @@
+package com.khan.interview.chris.limitedInfection.ingest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class EdgeListImporterUnitTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("edges", ".csv");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void importUsersTest() throws IOException {
+		write("coach,student,since\r\n\"c-1\",s-1,2015\r\nc-1,s-2\r\n\r\ns-2,c-1\r\nc-2,s-2");
+		EdgeListImporter importer = new EdgeListImporter(EdgeListImporter.CSV);
+		importer.setHeader(true);
+		// smaller than a line, so lines have to be carried over and grown
+		importer.setBufferSize(4);
+		List<User> users = importer.importUsers(file);
+		assertEquals(4, users.size());
+		assertEquals("c-1", users.get(0).getUID());
+		assertEquals("s-1", users.get(1).getUID());
+		assertEquals(2, users.get(0).getRelatedUsers().size());
+		// s-2 is related to both coaches, the reversed duplicate is dropped
+		assertEquals(2, users.get(2).getRelatedUsers().size());
+		assertTrue(users.get(3).hasRelatedUser(users.get(2)));
+	}
+
+	@Test
+	public void parallelMatchesSequentialTest() throws IOException {
+		Random random = new Random(3);
+		StringBuilder tsv = new StringBuilder();
+		// large enough to be cut into several splits
+		while (tsv.length() < 4 * EdgeListImporter.MIN_SPLIT) {
+			tsv.append("coach-").append(random.nextInt(5000)).append('\t').append("student-")
+					.append(random.nextInt(20000)).append('\n');
+		}
+		write(tsv.toString());
+
+		EdgeListImporter sequential = new EdgeListImporter(EdgeListImporter.TSV);
+		EdgeListImporter parallel = new EdgeListImporter(EdgeListImporter.TSV);
+		parallel.setParallelism(4);
+		parallel.setChunkSize(100);
+		Set<String> expected = relations(sequential);
+		Set<String> actual = relations(parallel);
+		assertEquals(tsv.toString().split("\n").length, expected.size() + duplicates(tsv.toString()));
+		assertEquals(expected, actual);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsSingleFieldTest() throws IOException {
+		write("c-1,s-1\nc-2\n");
+		new EdgeListImporter(EdgeListImporter.CSV).importUsers(file);
+	}
+
+	@Test
+	public void dictionaryTest() {
+		UidDictionary dictionary = new UidDictionary();
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, dictionary.intern("id-" + i));
+		}
+		byte[] bytes = "xid-42x".getBytes(StandardCharsets.UTF_8);
+		assertEquals(42, dictionary.intern(bytes, 1, 5));
+		assertEquals(1000, dictionary.size());
+		assertEquals("id-999", dictionary.uidOf(999));
+		assertEquals(-1, dictionary.indexOf("id-1000"));
+	}
+
+	private void write(String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Set<String> relations(EdgeListImporter importer) throws IOException {
+		final Set<String> relations = new HashSet<String>();
+		final UidDictionary dictionary = new UidDictionary();
+		importer.importEdges(file, dictionary, new EdgeSink() {
+			@Override
+			public void accept(int[] from, int[] to, int count) {
+				for (int i = 0; i < count; i++) {
+					relations.add(dictionary.uidOf(from[i]) + "\t" + dictionary.uidOf(to[i]));
+				}
+			}
+		});
+		return relations;
+	}
+
+	private static int duplicates(String tsv) {
+		Set<String> seen = new HashSet<String>();
+		int duplicates = 0;
+		for (String line : tsv.split("\n")) {
+			if (!seen.add(line))
+				duplicates++;
+		}
+		return duplicates;
+	}
+}
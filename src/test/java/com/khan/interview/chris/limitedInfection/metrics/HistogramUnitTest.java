@@ -0,0 +1,36 @@
+package com.khan.interview.chris.limitedInfection.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramUnitTest {
+
+	@Test
+	public void bucketsTest() {
+		for (long v : new long[] { 0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789L, Long.MAX_VALUE }) {
+			long highest = Histogram.highestOf(Histogram.bucketOf(v));
+			assertTrue(v + " in bucket up to " + highest, highest >= v && highest - v <= v / Histogram.SUB_BUCKETS);
+		}
+	}
+
+	@Test
+	public void percentilesTest() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.count());
+		assertEquals(500.5, histogram.mean(), 1e-9);
+		assertEquals(1000, histogram.max());
+		long median = histogram.valueAt(50);
+		assertTrue("median " + median, median >= 500 && median <= 500 + 500 / Histogram.SUB_BUCKETS);
+		assertEquals(1000, histogram.valueAt(100));
+		assertEquals(1, histogram.valueAt(0));
+
+		histogram.reset();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.valueAt(99));
+	}
+}
@@ -0,0 +1,61 @@
+package com.khan.interview.chris.limitedInfection.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+public class InfectionMetricsUnitTest {
+
+	@Test
+	public void jmxTest() throws Exception {
+		InfectionMetrics metrics = new InfectionMetrics();
+		metrics.recordTotalInfection(2000, 5);
+		metrics.recordTraversal(1000, 5, 10);
+		ObjectName name = metrics.register("unit-test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(1L, server.getAttribute(name, "TotalInfections"));
+			assertEquals(10L, server.getAttribute(name, "EdgesVisited"));
+			CompositeData time = (CompositeData) server.getAttribute(name, "TotalInfectionTime");
+			assertEquals(1L, time.get("count"));
+			assertEquals(2000L, time.get("max"));
+
+			server.invoke(name, "reset", null, null);
+			assertEquals(0L, server.getAttribute(name, "TotalInfections"));
+		} finally {
+			InfectionMetrics.unregister(name);
+		}
+	}
+
+	@Test
+	public void failingReportGoesToHandlerTest() throws Exception {
+		final CountDownLatch failures = new CountDownLatch(2);
+		MetricsReporter failing = new MetricsReporter() {
+			@Override
+			public void report(InfectionMetrics metrics) {
+				throw new IllegalStateException("reporter is down");
+			}
+		};
+		try (ScheduledReporter reporter = new ScheduledReporter(new InfectionMetrics(), failing, 20,
+				TimeUnit.MILLISECONDS)) {
+			reporter.setErrorHandler(new Thread.UncaughtExceptionHandler() {
+				@Override
+				public void uncaughtException(Thread t, Throwable e) {
+					if ("reporter is down".equals(e.getMessage()))
+						failures.countDown();
+				}
+			});
+			// reporting goes on after a failed report
+			assertTrue(failures.await(10, TimeUnit.SECONDS));
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.khan.interview.chris.limitedInfection.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FeatureRegistryUnitTest {
+
+	@Test
+	public void internsTest() {
+		FeatureRegistry registry = new FeatureRegistry();
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", Arrays.asList("1.0", "1.1"), "1.1");
+		int id = registry.register(blue);
+		assertEquals(0, id);
+		assertEquals(2, registry.versionCount());
+		assertEquals(0b11, registry.supportedMask(id));
+		assertEquals(registry.versionId("1.1"), registry.currentVersion(id));
+
+		// same name, new versions
+		KhanSiteFeature newBlue = new KhanSiteFeature("Cool Blue", Arrays.asList("1.1", "1.2"), "1.2");
+		int again = registry.register(newBlue);
+		assertEquals(id, again);
+		// the instance agrees with the masks
+		assertSame(newBlue, registry.feature(again));
+		assertEquals(registry.versionId("1.2"), registry.currentVersion(id));
+		assertFalse(registry.supports(id, registry.versionId("1.0")));
+		assertTrue(registry.supports(id, registry.versionId("1.2")));
+		assertFalse(registry.supports(id, FeatureRegistry.NO_VERSION));
+
+		assertEquals(1, registry.register(new KhanSiteFeature("Hot Red", Arrays.asList("1.0"), "1.0")));
+		assertEquals(1, registry.featureId("Hot Red"));
+		assertEquals(-1, registry.featureId("Plain Green"));
+	}
+
+	@Test
+	public void fullRegistryRegistersNothingTest() {
+		FeatureRegistry registry = new FeatureRegistry();
+		for (int i = 0; i < FeatureRegistry.MAX_VERSIONS - 1; i++) {
+			registry.versionId("v" + i);
+		}
+		try {
+			registry.register(new KhanSiteFeature("Cool Blue", Arrays.asList("2.0", "2.1"), "2.1"));
+			fail("two new versions don't fit");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(-1, registry.featureId("Cool Blue"));
+		assertEquals(FeatureRegistry.MAX_VERSIONS - 1, registry.versionCount());
+	}
+
+	@Test
+	public void releasesTest() {
+		FeatureRegistry registry = new FeatureRegistry();
+		KhanSiteFeature blue = new KhanSiteFeature("Cool Blue", Arrays.asList("1.0", "1.1"), "1.1");
+		KhanSiteFeature newBlue = new KhanSiteFeature("Cool Blue", Arrays.asList("1.1", "1.2"), "1.2");
+		registry.register(blue);
+		registry.register(newBlue);
+		int old = registry.releaseId(new KhanSiteFeature("Cool Blue", Arrays.asList("1.0", "1.1"), "1.1"));
+		assertSame(blue, registry.release(old));
+		assertSame(newBlue, registry.release(registry.releaseId(newBlue)));
+		assertFalse(old == registry.releaseId(newBlue));
+		assertEquals(-1, registry.releaseId(new KhanSiteFeature("Cool Blue", Arrays.asList("1.3"), "1.3")));
+		assertEquals(-1, registry.releaseId(new KhanSiteFeature("Hot Red", Arrays.asList("1.0"), "1.0")));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void tooManyVersionsTest() {
+		FeatureRegistry registry = new FeatureRegistry();
+		for (int i = 0; i <= FeatureRegistry.MAX_VERSIONS; i++) {
+			registry.versionId("v" + i);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.khan.interview.chris.limitedInfection.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RelationLoaderUnitTest {
+
+	@Test
+	public void loadsBothDirectionsTest() {
+		List<User> users = createUsers(4);
+		// 0-1 given twice and once reversed, 2-2 is a self relation
+		int[] from = { 0, 0, 1, 2, 1, 2 };
+		int[] to = { 1, 1, 0, 2, 2, 3 };
+		assertEquals(3, RelationLoader.load(users, from, to));
+		assertEquals(1, users.get(0).getRelatedUsers().size());
+		assertEquals(2, users.get(1).getRelatedUsers().size());
+		assertEquals(2, users.get(2).getRelatedUsers().size());
+		assertTrue(users.get(3).hasRelatedUser(users.get(2)));
+		assertTrue(users.get(1).hasRelatedUser(users.get(0)));
+	}
+
+	@Test
+	public void skipsExistingRelationsTest() {
+		List<User> users = createUsers(3);
+		users.get(0).addRelatedUser(users.get(1));
+		assertEquals(1, RelationLoader.load(users, new int[] { 1, 1 }, new int[] { 0, 2 }));
+		assertEquals(1, users.get(0).getRelatedUsers().size());
+		assertEquals(2, users.get(1).getRelatedUsers().size());
+	}
+
+	@Test
+	public void highDegreeUserTest() {
+		List<User> users = createUsers(5001);
+		int[] from = new int[5000];
+		int[] to = new int[5000];
+		for (int i = 0; i < 5000; i++) {
+			to[i] = i + 1;
+		}
+		RelationLoader.load(users, from, to);
+		User coach = users.get(0);
+		assertEquals(5000, coach.getRelatedUsers().size());
+		// relations added one by one afterwards still dedupe against the load
+		coach.addRelatedUser(users.get(4000));
+		users.get(17).addRelatedUser(coach);
+		assertEquals(5000, coach.getRelatedUsers().size());
+		assertEquals(1, users.get(17).getRelatedUsers().size());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void outOfRangeTest() {
+		RelationLoader.load(createUsers(2), new int[] { 0 }, new int[] { 2 });
+	}
+
+	private static List<User> createUsers(int number) {
+		List<User> users = new ArrayList<User>();
+		for (int i = 0; i < number; i++) {
+			users.add(new User("id-" + i, "test-user-" + i, new ArrayList<User>(), null));
+		}
+		return users;
+	}
+}
@@ -1,9 +1,13 @@
 package com.khan.interview.chris.limitedInfection.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.Test;
 
@@ -20,6 +24,77 @@ public class UserUnitTest {
 
 	}
 
+	@Test
+	public void hashSurvivesDeployTest() {
+		List<User> users = createListOfUsers(6);
+		Set<User> visited = new HashSet<User>(users);
+		for (User u : users) {
+			u.setCurrentFeature(new KhanSiteFeature("Cool Blue", new ArrayList<String>(), "version 1.0"));
+		}
+		for (User u : users) {
+			assertTrue(visited.contains(u));
+		}
+		// equal users hash the same, whatever their feature
+		User copy = new User("id-0", "test-user-0", new ArrayList<User>(), null);
+		assertEquals(users.get(0), copy);
+		assertEquals(users.get(0).hashCode(), copy.hashCode());
+		copy.setUsername("renamed");
+		assertTrue(!visited.contains(copy));
+	}
+
+	@Test
+	public void removeWithoutRelationsTest() {
+		User loner = new User("id-0", "loner", null, null);
+		User other = new User("id-1", "other", new ArrayList<User>(), null);
+		loner.removeRelatedUser(other);
+		other.removeRelatedUser(loner);
+		assertTrue(!loner.hasRelatedUser(other));
+	}
+
+	@Test
+	public void relatedIndexTest() {
+		List<User> users = createListOfUsers(40);
+		User coach = users.get(0);
+		User student = users.get(1);
+		assertTrue(coach.getRelatedUsers().size() > User.RELATED_INDEX_THRESHOLD);
+		assertTrue(coach.hasRelatedUser(student));
+		try {
+			coach.getRelatedUsers().set(0, users.get(2));
+			fail("relations changed through getRelatedUsers");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		coach.removeRelatedUser(student);
+		assertTrue(!coach.hasRelatedUser(student));
+		assertTrue(!student.hasRelatedUser(coach));
+
+		// a relation listed twice survives removing one copy
+		List<User> twice = new ArrayList<User>(users.subList(1, 20));
+		twice.add(student);
+		twice.add(student);
+		User copy = new User("id-copy", "copy", twice, null);
+		twice.clear();
+		assertTrue(copy.hasRelatedUser(student));
+		copy.removeRelatedUser(student);
+		assertTrue(copy.hasRelatedUser(student));
+		assertEquals(20, copy.getRelatedUsers().size());
+	}
+
+	@Test
+	public void renameKeepsRelatedIndexTest() {
+		List<User> users = createListOfUsers(40);
+		User coach = users.get(0);
+		User student = users.get(1);
+		// builds the coach's index with the student under its old hash
+		assertTrue(coach.hasRelatedUser(student));
+		student.setUID("id-renamed");
+		student.setUsername("renamed");
+		assertTrue(coach.hasRelatedUser(student));
+		coach.removeRelatedUser(student);
+		assertTrue(!coach.hasRelatedUser(student));
+		assertTrue(!student.hasRelatedUser(coach));
+	}
+
 	private List<User> createListOfUsers(int number) {
 		List<User> users = new ArrayList<User>();
 		for (int i = 0; i < number; i++) {
@@ -0,0 +1,75 @@
+package com.khan.interview.chris.limitedInfection.planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.graph.ConnectedComponents;
+import com.khan.interview.chris.limitedInfection.graph.UserGraph;
+import com.khan.interview.chris.limitedInfection.model.KhanSiteFeature;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class CohortAllocatorUnitTest {
+
+	@Test
+	public void disjointCohortsTest() {
+		// components of 8, 6, 5, 4, 3, 2 and 1 users
+		List<User> users = new ArrayList<User>();
+		for (int size : new int[] { 8, 6, 5, 4, 3, 2, 1 }) {
+			users.addAll(generateChain(size, users.size()));
+		}
+		ConnectedComponents components = ConnectedComponents.of(UserGraph.of(users));
+		KhanSiteFeature red = new KhanSiteFeature("Red", new ArrayList<String>(), "1");
+		KhanSiteFeature green = new KhanSiteFeature("Green", new ArrayList<String>(), "1");
+		KhanSiteFeature blue = new KhanSiteFeature("Blue", new ArrayList<String>(), "1");
+		CohortAllocator allocator = new CohortAllocator(components);
+		allocator.addTarget(red, 10);
+		allocator.addTarget(green, 9);
+		allocator.addTarget(blue, 7);
+
+		Map<KhanSiteFeature, CohortAllocator.Allocation> allocations = allocator
+				.allocate(components.componentsOf(users));
+		assertEquals(3, allocations.size());
+		BitSet taken = new BitSet();
+		long total = 0;
+		for (CohortAllocator.Allocation allocation : allocations.values()) {
+			assertTrue(allocation.toString(), allocation.getSize() <= allocation.getTarget());
+			assertEquals(allocation.getSize(), allocation.users().size());
+			assertFalse(taken.intersects(allocation.components()));
+			taken.or(allocation.components());
+			total += allocation.getSize();
+		}
+		// 8 goes to green, 6 to blue, 5 and 4 to red, and 1 fills the last
+		// room; an exact packing would reach all 26 users asked for
+		assertEquals(24, total);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicateTargetTest() {
+		CohortAllocator allocator = new CohortAllocator(
+				ConnectedComponents.of(UserGraph.of(generateChain(2, 0))));
+		KhanSiteFeature red = new KhanSiteFeature("Red", new ArrayList<String>(), "1");
+		allocator.addTarget(red, 1);
+		allocator.addTarget(red, 2);
+	}
+
+	private static List<User> generateChain(int number, int startingIndex) {
+		List<User> users = new ArrayList<User>();
+		for (int i = startingIndex; i < number + startingIndex; i++) {
+			User aUser = new User();
+			aUser.setUID("id-" + i);
+			aUser.setUsername("test-user-" + i);
+			if (!users.isEmpty())
+				users.get(users.size() - 1).addRelatedUser(aUser);
+			users.add(aUser);
+		}
+		return users;
+	}
+}
@@ -0,0 +1,54 @@
+package com.khan.interview.chris.limitedInfection.planner;
+
+import static com.khan.interview.chris.limitedInfection.graph.TestUsers.generateCircleOfUsers;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.khan.interview.chris.limitedInfection.graph.ConnectedComponents;
+import com.khan.interview.chris.limitedInfection.graph.UserGraph;
+import com.khan.interview.chris.limitedInfection.model.User;
+
+public class RampPlannerUnitTest {
+
+	@Test
+	public void nestedStagesTest() {
+		// circles of 1 to 20 users, 210 users in all
+		List<User> users = new ArrayList<User>();
+		for (int size = 1; size <= 20; size++) {
+			users.addAll(generateCircleOfUsers(size, users.size()));
+		}
+		ConnectedComponents components = ConnectedComponents.of(UserGraph.of(users));
+		RampPlanner ramp = new RampPlanner(components, users);
+
+		int[] limits = RampPlanner.limitsFor(users.size(), 1, 5, 25, 50, 100);
+		assertArrayEquals(new int[] { 2, 10, 52, 105, 210 }, limits);
+		BitSet previous = new BitSet();
+		for (int limit : limits) {
+			BitSet added = ramp.nextStage(limit);
+			assertTrue(!added.intersects(previous));
+			BitSet chosen = ramp.chosen();
+			BitSet kept = (BitSet) previous.clone();
+			kept.andNot(chosen);
+			assertTrue("a stage dropped components", kept.isEmpty());
+			// every size up to 20 is available, so each stage is exact
+			assertEquals(limit, ramp.size());
+			previous = chosen;
+		}
+		assertEquals(5, ramp.stages());
+
+		try {
+			ramp.nextStage(100);
+			fail("expected a shrinking stage to be refused");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.khan.interview.chris.limitedInfection.planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SubsetSumSelectorUnitTest {
+
+	@Test
+	public void exactSelectionTest() {
+		int[] weights = { 5, 7, 3, 11, 2 };
+		SubsetSumSelector selector = new SubsetSumSelector();
+		assertEquals(17, SubsetSumSelector.sum(weights, selector.select(weights, 17)));
+		assertEquals(28, SubsetSumSelector.sum(weights, selector.select(weights, 100)));
+		assertEquals(0, selector.select(weights, 1).length);
+		assertEquals(3, SubsetSumSelector.sum(weights, selector.select(weights, 4)));
+		assertEquals(9, SubsetSumSelector.sum(weights, selector.select(weights, 9)));
+	}
+
+	@Test
+	public void chosenItemsAreDistinctTest() {
+		// many equal weights get bundled together
+		int[] weights = new int[1000];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = i % 2 == 0 ? 1 : 3;
+		}
+		int[] chosen = new SubsetSumSelector().select(weights, 1234);
+		Set<Integer> seen = new HashSet<Integer>();
+		for (int i : chosen) {
+			assertTrue(seen.add(i));
+		}
+		assertEquals(1234, SubsetSumSelector.sum(weights, chosen));
+	}
+
+	@Test
+	public void matchesBruteForceTest() {
+		Random random = new Random(7);
+		SubsetSumSelector selector = new SubsetSumSelector();
+		for (int round = 0; round < 200; round++) {
+			int[] weights = new int[random.nextInt(10) + 1];
+			for (int i = 0; i < weights.length; i++) {
+				weights[i] = random.nextInt(150) + 1;
+			}
+			int limit = random.nextInt(400);
+			long best = 0;
+			for (int mask = 0; mask < 1 << weights.length; mask++) {
+				long total = 0;
+				for (int i = 0; i < weights.length; i++) {
+					if ((mask & (1 << i)) != 0)
+						total += weights[i];
+				}
+				if (total <= limit && total > best)
+					best = total;
+			}
+			assertEquals(best, SubsetSumSelector.sum(weights, selector.select(weights, limit)));
+		}
+	}
+
+	@Test
+	public void approximateUnderBudgetTest() {
+		Random random = new Random(3);
+		int[] weights = new int[2000];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = random.nextInt(5000) + 1;
+		}
+		int limit = 1000000;
+		// far too small for the exact DP
+		SubsetSumSelector selector = new SubsetSumSelector(1 << 16);
+		long total = SubsetSumSelector.sum(weights, selector.select(weights, limit));
+		assertTrue(total <= limit);
+		assertTrue(total > limit * 0.99);
+	}
+}